@@ -0,0 +1,46 @@
+package io.github.samera2022.mousemacros.bench;
+
+import io.github.samera2022.mousemacros.action.MacroTrack;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Synthetic recordings shared by the benchmarks.
+ */
+final class BenchData {
+    private BenchData() {}
+
+    // 以鼠标移动为主，夹杂少量点击和按键，模拟真实录制
+    static MacroTrack synthesize(int count) {
+        Random random = new Random(42);
+        MacroTrack track = new MacroTrack(count);
+        int x = 960, y = 540;
+        for (int i = 0; i < count; i++) {
+            int r = random.nextInt(100);
+            long delay = 5 + random.nextInt(20);
+            if (r < 94) {
+                x = Math.max(0, Math.min(3839, x + random.nextInt(21) - 10));
+                y = Math.max(0, Math.min(2159, y + random.nextInt(21) - 10));
+                track.add(x, y, 0, 0, delay, 0, 0, 0);
+            } else if (r < 97) {
+                track.add(x, y, 1 + (i & 1), 1, delay, 0, 0, 0);
+            } else if (r < 98) {
+                track.add(x, y, 3, 0, delay, random.nextBoolean() ? 1 : -1, 0, 0);
+            } else {
+                track.add(0, 0, 10 + (i & 1), 0, delay, 0, 30, 65);
+            }
+        }
+        return track;
+    }
+
+    // 旧版逐行CSV格式
+    static void writeCsv(Writer out, MacroTrack t) throws IOException {
+        for (int i = 0; i < t.size(); i++) {
+            if (i > 0) out.write('\n');
+            out.write(t.getX(i) + "," + t.getY(i) + "," + t.getType(i) + "," + t.getButton(i) + "," + t.getDelay(i) + ","
+                    + t.getWheelAmount(i) + "," + t.getKeyCode(i) + "," + t.getAwtKeyCode(i));
+        }
+    }
+}
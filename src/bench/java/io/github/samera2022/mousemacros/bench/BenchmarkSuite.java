@@ -0,0 +1,41 @@
+package io.github.samera2022.mousemacros.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.*;
+import java.io.File;
+
+/**
+ * Runs the JMH benchmarks of the record, save/load and replay hot paths and writes the results
+ * as JSON to target/jmh-result.json, so runs can be compared across releases.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark compile exec:exec}
+ * <br>
+ * Arguments are regular expressions selecting benchmarks (default: all JMH benchmarks in this package).
+ * Benchmarks that need a real display are skipped when running headless.
+ */
+public class BenchmarkSuite {
+    public static void main(String[] args) throws RunnerException {
+        File result = new File("target", "jmh-result.json");
+        result.getParentFile().mkdirs();
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .jvmArgsAppend("-Djava.awt.headless=" + GraphicsEnvironment.isHeadless())
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.getPath());
+        if (args.length == 0) {
+            options.include(BenchmarkSuite.class.getPackage().getName() + ".*");
+        }
+        for (String pattern : args) {
+            options.include(pattern);
+        }
+        if (GraphicsEnvironment.isHeadless()) {
+            options.exclude(".*\\.legacy.*");
+        }
+        new Runner(options.build()).run();
+        System.out.println("Results written to " + result.getAbsolutePath());
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.samera2022.mousemacros.bench;
+
+import com.github.kwhat.jnativehook.mouse.NativeMouseEvent;
+import com.github.kwhat.jnativehook.mouse.NativeMouseWheelEvent;
+import io.github.samera2022.mousemacros.listener.GlobalMouseListener;
+import io.github.samera2022.mousemacros.manager.MacroManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one hook callback while recording, i.e. the time the native hook thread spends in
+ * {@link GlobalMouseListener} before it can deliver the next event. Uses synthetic NativeMouseEvents.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListenerIngestionBenchmark {
+    private final GlobalMouseListener listener = new GlobalMouseListener();
+    private NativeMouseEvent[] moves;
+    private NativeMouseEvent press;
+    private NativeMouseEvent release;
+    private NativeMouseWheelEvent wheel;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        moves = new NativeMouseEvent[1024];
+        for (int i = 0; i < moves.length; i++) {
+            // 小幅抖动，与真实鼠标移动一样大部分会被采集线程过滤
+            moves[i] = new NativeMouseEvent(NativeMouseEvent.NATIVE_MOUSE_MOVED, 0, 960 + (i % 3), 540 + (i % 2), 0);
+        }
+        press = new NativeMouseEvent(NativeMouseEvent.NATIVE_MOUSE_PRESSED, 0, 960, 540, 1, NativeMouseEvent.BUTTON1);
+        release = new NativeMouseEvent(NativeMouseEvent.NATIVE_MOUSE_RELEASED, 0, 960, 540, 1, NativeMouseEvent.BUTTON1);
+        wheel = new NativeMouseWheelEvent(NativeMouseWheelEvent.NATIVE_MOUSE_WHEEL, 0, 960, 540, 0,
+                NativeMouseWheelEvent.WHEEL_UNIT_SCROLL, 3, 1);
+    }
+
+    // 每轮重新开始录制，避免录制结果在整个测试期间无限增长
+    @Setup(Level.Iteration)
+    public void startRecording() {
+        MacroManager.startRecording();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopRecording() {
+        MacroManager.stopRecording();
+    }
+
+    @Benchmark
+    public void mouseMoved() {
+        listener.nativeMouseMoved(moves[index++ & (moves.length - 1)]);
+    }
+
+    @Benchmark
+    public void mouseClick() {
+        listener.nativeMousePressed(press);
+        listener.nativeMouseReleased(release);
+    }
+
+    @Benchmark
+    public void mouseWheel() {
+        listener.nativeMouseWheelMoved(wheel);
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.samera2022.mousemacros.bench;
+
+import io.github.samera2022.mousemacros.action.MacroTrack;
+import io.github.samera2022.mousemacros.action.MouseAction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the retained heap of {@link MacroTrack} with the former {@code ArrayList<MouseAction>}
+ * for 1M, 10M and 50M synthetic mouse-move events.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark compile exec:exec -Dbench.main=io.github.samera2022.mousemacros.bench.MacroTrackMemoryBenchmark -Dbench.heap=8g}
+ * <br>
+ * Sizes can be overridden by passing counts as arguments.
+ */
+public class MacroTrackMemoryBenchmark {
+    public static void main(String[] args) {
+        long[] counts = args.length > 0 ? parse(args) : new long[]{1_000_000L, 10_000_000L, 50_000_000L};
+        System.out.printf("max heap: %d MB%n", Runtime.getRuntime().maxMemory() >> 20);
+        System.out.printf("%-12s %-10s %14s %12s %10s%n", "events", "store", "retained MB", "bytes/evt", "fill ms");
+        for (long count : counts) {
+            run((int) count, "MacroTrack", true);
+            run((int) count, "ArrayList", false);
+        }
+    }
+
+    private static void run(int count, String name, boolean columnar) {
+        long before = usedAfterGc();
+        long start = System.nanoTime();
+        Object store;
+        try {
+            store = columnar ? fillTrack(count) : fillList(count);
+        } catch (OutOfMemoryError e) {
+            System.out.printf("%-12d %-10s %14s%n", count, name, "OOM");
+            return;
+        }
+        long fillMs = (System.nanoTime() - start) / 1_000_000L;
+        long retained = usedAfterGc() - before;
+        System.out.printf("%-12d %-10s %14.1f %12.1f %10d%n", count, name, retained / 1048576.0, (double) retained / count, fillMs);
+        // 保持引用直到测量完成
+        if (store.hashCode() == 42) System.out.print("");
+    }
+
+    private static MacroTrack fillTrack(int count) {
+        MacroTrack track = new MacroTrack();
+        for (int i = 0; i < count; i++) {
+            track.add(i & 2047, (i >> 3) & 1023, 0, 0, i & 15, 0, 0, 0);
+        }
+        track.trimToSize();
+        return track;
+    }
+
+    private static List<MouseAction> fillList(int count) {
+        List<MouseAction> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(new MouseAction(i & 2047, (i >> 3) & 1023, 0, 0, i & 15));
+        }
+        ((ArrayList<MouseAction>) list).trimToSize();
+        return list;
+    }
+
+    private static long usedAfterGc() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long[] parse(String[] args) {
+        long[] counts = new long[args.length];
+        for (int i = 0; i < args.length; i++) counts[i] = Long.parseLong(args[i].replace("_", ""));
+        return counts;
+    }
+}
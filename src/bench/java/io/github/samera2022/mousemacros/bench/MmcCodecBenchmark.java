@@ -0,0 +1,68 @@
+package io.github.samera2022.mousemacros.bench;
+
+import io.github.samera2022.mousemacros.action.MacroTrack;
+import io.github.samera2022.mousemacros.macro.LegacyCsvImporter;
+import io.github.samera2022.mousemacros.macro.MmcReader;
+import io.github.samera2022.mousemacros.macro.MmcWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory .mmc serialization and parsing of a synthetic recording, binary v2 and legacy CSV.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MmcCodecBenchmark {
+    @Param({"10000", "1000000"})
+    public int events;
+
+    private MacroTrack track;
+    private byte[] binary;
+    private String csv;
+    private byte[] csvBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        track = BenchData.synthesize(events);
+        binary = writeBinary();
+        StringWriter out = new StringWriter();
+        BenchData.writeCsv(out, track);
+        csv = out.toString();
+        csvBytes = csv.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] writeBinary() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(events * 8);
+        try (MmcWriter writer = new MmcWriter(out)) {
+            writer.writeAll(track.cursor());
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public MacroTrack readBinary() throws IOException {
+        MacroTrack result = new MacroTrack(events);
+        try (MmcReader reader = new MmcReader(new ByteArrayInputStream(binary))) {
+            reader.readInto(result);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public MacroTrack readCsv() throws IOException {
+        return LegacyCsvImporter.read(new StringReader(csv), null);
+    }
+
+    @Benchmark
+    public MacroTrack readCsvChunked() throws IOException {
+        return LegacyCsvImporter.read(new ByteArrayInputStream(csvBytes), null);
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.samera2022.mousemacros.bench;
+
+import io.github.samera2022.mousemacros.action.MacroTrack;
+import io.github.samera2022.mousemacros.macro.MmcFormat;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Compares file size and load time of the legacy CSV .mmc format with the binary v2 format.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark compile exec:exec -Dbench.main=io.github.samera2022.mousemacros.bench.MmcFormatBenchmark}
+ * <br>
+ * The event count can be passed as the first argument (default 2,000,000).
+ */
+public class MmcFormatBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0].replace("_", "")) : 2_000_000;
+        MacroTrack track = BenchData.synthesize(count);
+
+        File csv = File.createTempFile("mmc-bench-", ".csv.mmc");
+        File bin = File.createTempFile("mmc-bench-", ".v2.mmc");
+        csv.deleteOnExit();
+        bin.deleteOnExit();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csv), StandardCharsets.UTF_8), 1 << 16)) {
+            BenchData.writeCsv(out, track);
+        }
+        long start = System.nanoTime();
+        MmcFormat.write(bin, track.cursor());
+        long writeMs = (System.nanoTime() - start) / 1_000_000L;
+
+        verify(track, MmcFormat.read(bin, null));
+        verify(track, MmcFormat.read(csv, null));
+
+        System.out.printf("events: %d, v2 write: %d ms%n", count, writeMs);
+        System.out.printf("%-8s %12s %12s %14s%n", "format", "size MB", "bytes/evt", "best load ms");
+        report("csv", csv, count);
+        report("v2", bin, count);
+    }
+
+    private static void report(String name, File file, int count) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            MmcFormat.read(file, null);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        long size = Files.size(file.toPath());
+        System.out.printf("%-8s %12.2f %12.2f %14.1f%n", name, size / 1048576.0, (double) size / count, best / 1e6);
+    }
+
+    private static void verify(MacroTrack expected, MacroTrack actual) {
+        if (expected.size() != actual.size()) throw new IllegalStateException("size mismatch: " + actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.getX(i) != actual.getX(i) || expected.getY(i) != actual.getY(i) || expected.getType(i) != actual.getType(i)
+                    || expected.getButton(i) != actual.getButton(i) || expected.getDelay(i) != actual.getDelay(i)
+                    || expected.getWheelAmount(i) != actual.getWheelAmount(i) || expected.getKeyCode(i) != actual.getKeyCode(i)
+                    || expected.getAwtKeyCode(i) != actual.getAwtKeyCode(i)) {
+                throw new IllegalStateException("round trip mismatch at event " + i);
+            }
+        }
+    }
+}
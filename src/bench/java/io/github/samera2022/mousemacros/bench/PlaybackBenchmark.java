@@ -0,0 +1,108 @@
+package io.github.samera2022.mousemacros.bench;
+
+import io.github.samera2022.mousemacros.action.MacroTrack;
+import io.github.samera2022.mousemacros.playback.InputSink;
+import io.github.samera2022.mousemacros.playback.NullInputSink;
+import io.github.samera2022.mousemacros.playback.PlaybackPlan;
+import io.github.samera2022.mousemacros.playback.TimingStrategy;
+import io.github.samera2022.mousemacros.util.ScreenUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Playback overhead without real input: compiling the plan, and one quick-mode loop over it
+ * (deadline wait plus dispatch) into headless input sinks instead of the Robot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlaybackBenchmark {
+    @Param({"10000"})
+    public int events;
+
+    private MacroTrack track;
+    private PlaybackPlan plan;
+    private PlaybackPlan.Blocks blocks;
+
+    @Setup
+    public void setUp() {
+        track = BenchData.synthesize(events);
+        plan = PlaybackPlan.compile(track, ScreenUtil.getGeometry());
+        blocks = plan.blocks();
+    }
+
+    @Benchmark
+    public PlaybackPlan compilePlan() {
+        return PlaybackPlan.compile(track, ScreenUtil.getGeometry());
+    }
+
+    // 与PlaybackEngine单个会话的分发循环一致，快速模式下截止时间不前移
+    @Benchmark
+    public void replayLoop(Blackhole bh) throws InterruptedException {
+        replay(new BlackholeSink(bh));
+    }
+
+    @Benchmark
+    public void replayLoopNullSink() throws InterruptedException {
+        replay(NullInputSink.INSTANCE);
+    }
+
+    private void replay(InputSink sink) throws InterruptedException {
+        TimingStrategy timing = TimingStrategy.HYBRID;
+        blocks.rewind();
+        long loopStart = System.nanoTime();
+        PlaybackPlan.Block block;
+        while ((block = blocks.next()) != null) {
+            int size = block.size();
+            for (int k = 0; k < size; k++) {
+                timing.sleepUntil(loopStart);
+                block.dispatch(k, sink);
+            }
+        }
+    }
+
+    // 把所有输入交给Blackhole，防止JIT把分发整体消除
+    private static final class BlackholeSink implements InputSink {
+        private final Blackhole bh;
+
+        BlackholeSink(Blackhole bh) {
+            this.bh = bh;
+        }
+
+        @Override
+        public void mouseMove(int x, int y) {
+            bh.consume(x);
+            bh.consume(y);
+        }
+
+        @Override
+        public void mousePress(int buttonMask) {
+            bh.consume(buttonMask);
+        }
+
+        @Override
+        public void mouseRelease(int buttonMask) {
+            bh.consume(buttonMask);
+        }
+
+        @Override
+        public void mouseWheel(int amount) {
+            bh.consume(amount);
+        }
+
+        @Override
+        public void keyPress(int keyCode) {
+            bh.consume(keyCode);
+        }
+
+        @Override
+        public void keyRelease(int keyCode) {
+            bh.consume(keyCode);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.samera2022.mousemacros.bench;
+
+import io.github.samera2022.mousemacros.util.ScreenUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event cost of coordinate normalization/denormalization: the cached geometry snapshot
+ * against the former per-call GraphicsEnvironment queries (the legacy baseline needs a display).
+ * <p>
+ * Run with: {@code mvn -Pbenchmark compile exec:exec -Dbench.args=ScreenUtilBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScreenUtilBenchmark {
+    private int x = 1234;
+    private int y = 567;
+
+    @Benchmark
+    public long cachedDenormalize() {
+        ScreenUtil.Geometry g = ScreenUtil.getGeometry();
+        return g.toRobotX(x) + ((long) g.toRobotY(y) << 32);
+    }
+
+    @Benchmark
+    public long cachedNormalize() {
+        ScreenUtil.Geometry g = ScreenUtil.getGeometry();
+        return g.normalizeX(x) + ((long) g.normalizeY(y) << 32);
+    }
+
+    @Benchmark
+    public Point pointDenormalize() {
+        return ScreenUtil.denormalizeFromVirtualOrigin(x, y);
+    }
+
+    @Benchmark
+    public Point legacyDenormalize() {
+        Point virtualOrigin = legacyVirtualOrigin();
+        int globalX = x + virtualOrigin.x;
+        int globalY = y + virtualOrigin.y;
+        GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        Rectangle primaryBounds = gc.getBounds();
+        double scaleX = gc.getDefaultTransform().getScaleX();
+        double scaleY = gc.getDefaultTransform().getScaleY();
+        return new Point((int) Math.round((globalX - primaryBounds.x) / scaleX), (int) Math.round((globalY - primaryBounds.y) / scaleY));
+    }
+
+    @Benchmark
+    public Point legacyNormalize() {
+        Point origin = legacyVirtualOrigin();
+        return new Point(x - origin.x, y - origin.y);
+    }
+
+    // 修改前ScreenUtil.getVirtualOrigin的实现
+    private static Point legacyVirtualOrigin() {
+        GraphicsDevice[] devices = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        for (GraphicsDevice device : devices) {
+            Rectangle bounds = device.getDefaultConfiguration().getBounds();
+            if (bounds.x < minX) minX = bounds.x;
+            if (bounds.y < minY) minY = bounds.y;
+        }
+        return new Point(minX, minY);
+    }
+}
@@ -0,0 +1,148 @@
+package io.github.samera2022.mousemacros.build;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Build step that compiles langs/*.json into the binary bundles read by Localizer, so the app never parses
+ * JSON at runtime, and generates the LangKeys class of key ID constants. Run by Maven as a single-file
+ * source program:
+ * <pre>
+ * java -cp &lt;gson&gt; LangBundleCompiler.java &lt;langs dir&gt; &lt;output dir&gt; &lt;generated sources dir&gt;
+ * </pre>
+ * Output, with every int big-endian and every string in modified UTF-8 as written by DataOutput.writeUTF:
+ * <pre>
+ * index.bin:  'M' 'M' 'L' 'X', version (1 byte), language count (int), language codes,
+ *             key count (int), keys in ID order
+ * &lt;lang&gt;.bin: 'M' 'M' 'L' 'B', version (1 byte), key count (int), pool length in chars (int),
+ *             per key ID: start and length in the pool (int, int; start -1 if untranslated),
+ *             then the string pool (UTF-8)
+ * </pre>
+ * The key ID of a key is its position in the sorted union of the keys of all languages.
+ */
+public class LangBundleCompiler {
+    private static final byte[] INDEX_MAGIC = {'M', 'M', 'L', 'X'};
+    private static final byte[] BUNDLE_MAGIC = {'M', 'M', 'L', 'B'};
+    private static final int VERSION = 1;
+    private static final String KEYS_PACKAGE = "io.github.samera2022.mousemacros";
+    private static final String KEYS_CLASS = "LangKeys";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: LangBundleCompiler <langs dir> <output dir> <generated sources dir>");
+            System.exit(2);
+        }
+        Path in = Paths.get(args[0]);
+        Path out = Paths.get(args[1]);
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(in)) {
+            files = paths.filter(p -> p.getFileName().toString().endsWith(".json")).sorted().collect(Collectors.toList());
+        }
+        if (files.isEmpty()) throw new IOException("No language files in " + in);
+
+        Gson gson = new Gson();
+        Map<String, Map<String, String>> langs = new LinkedHashMap<>();
+        SortedSet<String> keys = new TreeSet<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Map<String, String> map;
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                map = gson.fromJson(reader, new TypeToken<LinkedHashMap<String, String>>() {}.getType());
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed language file " + file + ": " + e.getMessage(), e);
+            }
+            if (map == null) map = Collections.emptyMap();
+            langs.put(name.substring(0, name.length() - 5), map);
+            keys.addAll(map.keySet());
+        }
+        String[] ids = keys.toArray(new String[0]);
+
+        Files.createDirectories(out);
+        try (DataOutputStream data = open(out.resolve("index.bin"))) {
+            data.write(INDEX_MAGIC);
+            data.writeByte(VERSION);
+            data.writeInt(langs.size());
+            for (String lang : langs.keySet()) data.writeUTF(lang);
+            data.writeInt(ids.length);
+            for (String key : ids) data.writeUTF(key);
+        }
+        for (Map.Entry<String, Map<String, String>> lang : langs.entrySet()) {
+            writeBundle(out.resolve(lang.getKey() + ".bin"), ids, lang.getValue());
+        }
+        writeKeys(Paths.get(args[2]), ids);
+        System.out.println("Compiled " + langs.size() + " languages, " + ids.length + " keys into " + out);
+    }
+
+    private static void writeBundle(Path file, String[] ids, Map<String, String> map) throws IOException {
+        StringBuilder pool = new StringBuilder();
+        int[] start = new int[ids.length];
+        int[] length = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            String value = map.get(ids[i]);
+            if (value == null) {
+                start[i] = -1;
+                continue;
+            }
+            start[i] = pool.length();
+            length[i] = value.length();
+            pool.append(value);
+        }
+        try (DataOutputStream data = open(file)) {
+            data.write(BUNDLE_MAGIC);
+            data.writeByte(VERSION);
+            data.writeInt(ids.length);
+            data.writeInt(pool.length());
+            for (int i = 0; i < ids.length; i++) {
+                data.writeInt(start[i]);
+                data.writeInt(length[i]);
+            }
+            data.write(pool.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writeKeys(Path sourceRoot, String[] ids) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(KEYS_PACKAGE).append(";\n\n");
+        sb.append("/**\n * Key IDs of the language bundles, for {@link Localizer#get(int)}. Generated by LangBundleCompiler\n");
+        sb.append(" * from langs/*.json; do not edit.\n */\n");
+        sb.append("public final class ").append(KEYS_CLASS).append(" {\n");
+        sb.append("    public static final int COUNT = ").append(ids.length).append(";\n\n");
+        Map<String, String> names = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            String name = constantName(ids[i]);
+            String clash = names.put(name, ids[i]);
+            if (clash != null) throw new IOException("Keys " + clash + " and " + ids[i] + " both map to " + name);
+            sb.append("    /** ").append(ids[i]).append(" */\n");
+            sb.append("    public static final int ").append(name).append(" = ").append(i).append(";\n");
+        }
+        sb.append("\n    private ").append(KEYS_CLASS).append("() {\n    }\n}\n");
+        Path file = sourceRoot.resolve(KEYS_PACKAGE.replace('.', '/')).resolve(KEYS_CLASS + ".java");
+        Files.createDirectories(file.getParent());
+        // 内容不变时不改写，避免每次构建都触发重新编译
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        if (Files.exists(file) && Arrays.equals(Files.readAllBytes(file), bytes)) return;
+        Files.write(file, bytes);
+    }
+
+    // log.recording_mouse_pressed -> LOG_RECORDING_MOUSE_PRESSED
+    private static String constantName(String key) {
+        StringBuilder sb = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) ? Character.toUpperCase(c) : '_');
+        }
+        if (sb.length() == 0 || Character.isDigit(sb.charAt(0))) sb.insert(0, '_');
+        return sb.toString();
+    }
+
+    private static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+    }
+}
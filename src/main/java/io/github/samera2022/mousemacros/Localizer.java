@@ -1,57 +1,124 @@
 package io.github.samera2022.mousemacros;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import io.github.samera2022.mousemacros.constant.OtherConsts;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Translations from the binary language bundles compiled from langs/*.json at build time
+ * (see LangBundleCompiler under src/build/java). index.bin lists the languages and gives every key an ID;
+ * each &lt;lang&gt;.bin holds that language's strings by key ID in one string pool and is loaded with a single read.
+ * <p>
+ * The English fallback, and the key itself as the last resort, are merged in when a language loads, so
+ * {@link #get(int)} with a {@link LangKeys} constant is a single array load.
+ */
 public class Localizer {
-    private static Map<String, String> translations = new HashMap<>();
-    private static final Map<String, String> fallbackTranslations; // en_us
+    private static final String LANG_PATH = OtherConsts.RELATIVE_PATH + "langs/";
+    private static final byte[] INDEX_MAGIC = {'M', 'M', 'L', 'X'};
+    private static final byte[] BUNDLE_MAGIC = {'M', 'M', 'L', 'B'};
+    private static final int VERSION = 1;
+
+    private static final String[] availableLangs;
+    private static final Map<String, Integer> keyIds;
+    private static final String[] keyNames;
+    private static final String[] fallbackTranslations; // en_us, unmerged
+    private static volatile String[] translations;
     private static String currentLang;
     private static boolean runtimeSwitch = false;
 
     static {
-        // 1. Always load en_us as a permanent fallback map.
-        fallbackTranslations = loadLanguageMap("en_us");
-
-        // 2. Detect system language and load it.
-        String sysLang = java.util.Locale.getDefault().toString().toLowerCase();
-        sysLang = sysLang.replace('-', '_');
-        if (sysLang.startsWith("zh")) {
-            sysLang = "zh_cn";
-        } else {
-            sysLang = "en_us"; // Default to en_us if not Chinese
+        String[] langs = new String[0];
+        Map<String, Integer> ids = Collections.emptyMap();
+        String[] names = new String[0];
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(readResource(LANG_PATH + "index.bin")));
+            checkHeader(in, INDEX_MAGIC);
+            langs = new String[in.readInt()];
+            for (int i = 0; i < langs.length; i++) langs[i] = in.readUTF();
+            int count = in.readInt();
+            if (count != LangKeys.COUNT) throw new IOException("Index does not match LangKeys, rebuild the project");
+            ids = new HashMap<>(count * 2);
+            names = new String[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = in.readUTF();
+                ids.put(names[i], i);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to load language index: " + e.getMessage());
+        }
+        availableLangs = langs;
+        keyIds = ids;
+        keyNames = names;
+
+        // Always load en_us as a permanent fallback. The active language is loaded by MainFrame
+        // from the config, so nothing else is read before the window shows.
+        fallbackTranslations = loadBundle("en_us");
+        translations = merge(fallbackTranslations);
+        currentLang = "en_us";
+    }
+
+    private static byte[] readResource(String path) throws IOException {
+        try (InputStream in = Localizer.class.getResourceAsStream(path)) {
+            if (in == null) throw new IOException("Language file not found: " + path);
+            return in.readAllBytes();
         }
-        load(sysLang);
+    }
+
+    private static void checkHeader(DataInputStream in, byte[] magic) throws IOException {
+        byte[] head = new byte[magic.length];
+        in.readFully(head);
+        if (!Arrays.equals(head, magic)) throw new IOException("Not a language bundle");
+        int version = in.readUnsignedByte();
+        if (version != VERSION) throw new IOException("Unsupported language bundle version " + version);
     }
 
     /**
-     * Helper method to load a specific language map from resources.
+     * Helper method to load a specific language bundle from resources.
      * @param lang The language code (e.g., "en_us").
-     * @return A map of translations, or an empty map if loading fails.
+     * @return The translations by key ID, with null for untranslated keys; all null if loading fails.
      */
-    private static Map<String, String> loadLanguageMap(String lang) {
-        String path = OtherConsts.RELATIVE_PATH + "langs/" + lang + ".json";
-        try (InputStream in = Localizer.class.getResourceAsStream(path)) {
-            if (in == null) {
-                System.err.println("Language file not found: " + path);
-                return Collections.emptyMap();
+    private static String[] loadBundle(String lang) {
+        String path = LANG_PATH + lang + ".bin";
+        String[] values = new String[keyIds.size()];
+        try {
+            byte[] bytes = readResource(path);
+            checkHeader(new DataInputStream(new ByteArrayInputStream(bytes)), BUNDLE_MAGIC);
+            ByteBuffer buf = ByteBuffer.wrap(bytes, BUNDLE_MAGIC.length + 1, bytes.length - BUNDLE_MAGIC.length - 1);
+            int count = buf.getInt();
+            if (count != values.length) throw new IOException("Bundle does not match the language index");
+            int poolLength = buf.getInt();
+            int poolStart = buf.position() + count * 8;
+            String pool = new String(bytes, poolStart, bytes.length - poolStart, StandardCharsets.UTF_8);
+            if (pool.length() != poolLength) throw new IOException("Corrupt string pool");
+            for (int i = 0; i < count; i++) {
+                int start = buf.getInt();
+                int length = buf.getInt();
+                if (start >= 0) values[i] = pool.substring(start, start + length);
             }
-            InputStreamReader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
-            Map<String, String> loadedMap = new Gson().fromJson(reader, new TypeToken<Map<String, String>>() {}.getType());
-            return loadedMap != null ? loadedMap : Collections.emptyMap();
-        } catch (Exception e) {
-            System.err.println("Failed to load or parse language file: " + path);
-            e.printStackTrace();
-            return Collections.emptyMap();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to load language bundle " + path + ": " + e.getMessage());
+            Arrays.fill(values, null);
+        }
+        return values;
+    }
+
+    // 缺失的翻译依次用英文和键名补齐；键名补齐的项与keyNames是同一对象，hasKey据此判断
+    private static String[] merge(String[] values) {
+        String[] merged = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i] != null ? values[i] : fallbackTranslations[i];
+            merged[i] = value != null ? value : keyNames[i];
         }
+        return merged;
     }
 
     /**
@@ -61,12 +128,8 @@ public class Localizer {
     public static void load(String lang) {
         if (lang == null) return;
 
-        // If loading the fallback language, just copy the already loaded map.
-        if (lang.equals("en_us")) {
-            translations = new HashMap<>(fallbackTranslations);
-        } else {
-            translations = loadLanguageMap(lang);
-        }
+        // If loading the fallback language, there is nothing to read.
+        translations = merge(lang.equals("en_us") ? fallbackTranslations : loadBundle(lang));
         currentLang = lang;
     }
 
@@ -79,24 +142,38 @@ public class Localizer {
      */
     public static String get(String key) {
         if (key == null) return "";
+        Integer id = keyIds.get(key);
+        return id != null ? translations[id] : key;
+    }
 
-        // 1. Try to get from the current language map.
-        String value = translations.get(key);
-        if (value != null) {
-            return value;
-        }
+    /**
+     * Gets the translated string for a {@link LangKeys} constant, with the fallback already applied.
+     */
+    public static String get(int id) {
+        String[] values = translations;
+        // 索引未加载时数组为空
+        return id < values.length ? values[id] : String.valueOf(id);
+    }
 
-        // 2. If not found, fall back to the English map.
-        value = fallbackTranslations.get(key);
+    /**
+     * @return true if a bundle for {@code lang} was built, without loading it.
+     */
+    public static boolean isAvailable(String lang) {
+        return Arrays.asList(availableLangs).contains(lang);
+    }
 
-        // 3. If still not found, return the key itself.
-        return value != null ? value : key;
+    /**
+     * @return the language codes listed in the generated manifest.
+     */
+    public static String[] getAvailableLangs() {
+        return availableLangs.clone();
     }
 
     public static String getS(String key) { return get("settings."+key); }
 
     public static boolean hasKey(String key) {
-        return translations.containsKey(key) || fallbackTranslations.containsKey(key);
+        Integer id = keyIds.get(key);
+        return id != null && translations[id] != keyNames[id];
     }
 
     public static void setRuntimeSwitch(boolean enable) {
@@ -1,6 +1,12 @@
 package io.github.samera2022.mousemacros;
 
 import io.github.samera2022.mousemacros.config.ConfigManager;
+import io.github.samera2022.mousemacros.macro.MacroLibraryIndex;
+import io.github.samera2022.mousemacros.manager.MacroManager;
+import io.github.samera2022.mousemacros.playback.TimerCalibration;
+import io.github.samera2022.mousemacros.ui.frame.MainFrame;
+import io.github.samera2022.mousemacros.util.ConsoleOutputCapturer;
+import io.github.samera2022.mousemacros.util.StartupTimer;
 
 import javax.swing.*;
 
@@ -8,11 +14,25 @@ import static io.github.samera2022.mousemacros.ui.frame.MainFrame.MAIN_FRAME;
 
 public class Main {
     public static void main(String[] args) {
+        long begin = StartupTimer.begin();
         String dllName = "JNativeHook.x86_64.dll";
         String configDir = ConfigManager.CONFIG_DIR;
         java.io.File libDir = new java.io.File(configDir+"/libs/", dllName);
         if (!libDir.exists()) libDir.mkdirs();
         System.setProperty("jnativehook.lib.path", libDir.getAbsolutePath());
-        SwingUtilities.invokeLater(() -> MAIN_FRAME.setVisible(true));
+        ConsoleOutputCapturer.start();
+        StartupTimer.end("Config", begin);
+        TimerCalibration.calibrateAsync();
+        MacroLibraryIndex.start();
+        SwingUtilities.invokeLater(() -> {
+            long frameBegin = StartupTimer.begin();
+            MainFrame frame = MAIN_FRAME;
+            StartupTimer.end("Main frame", frameBegin);
+            frame.setVisible(true);
+            StartupTimer.end("Window shown", begin);
+            // 窗口显示之后再加载本地钩子
+            MainFrame.registerNativeHookAsync();
+            MacroManager.offerJournalRecovery(frame);
+        });
     }
-}
\ No newline at end of file
+}
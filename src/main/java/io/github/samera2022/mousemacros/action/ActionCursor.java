@@ -0,0 +1,30 @@
+package io.github.samera2022.mousemacros.action;
+
+/**
+ * Read-only, forward-only view over a sequence of recorded actions.
+ * The accessors describe the action the last successful {@link #next()} moved to.
+ */
+public interface ActionCursor {
+    boolean next();
+
+    /**
+     * Moves back before the first action so that the sequence can be replayed.
+     */
+    void rewind();
+
+    int x();
+
+    int y();
+
+    int type();
+
+    int button();
+
+    long delay();
+
+    int wheelAmount();
+
+    int keyCode();
+
+    int awtKeyCode();
+}
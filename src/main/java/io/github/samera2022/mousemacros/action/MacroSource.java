@@ -0,0 +1,18 @@
+package io.github.samera2022.mousemacros.action;
+
+/**
+ * Something a macro can be replayed from, either held on the heap or read in place from a file.
+ */
+public interface MacroSource {
+    /**
+     * @return a new cursor positioned before the first action; it may be rewound for repeat loops.
+     */
+    ActionCursor cursor();
+
+    boolean isEmpty();
+
+    /**
+     * @return the number of actions, or -1 if it is not known without decoding the whole source.
+     */
+    long getActionCount();
+}
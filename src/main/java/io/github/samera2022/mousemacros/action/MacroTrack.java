@@ -0,0 +1,182 @@
+package io.github.samera2022.mousemacros.action;
+
+import java.util.Arrays;
+
+/**
+ * Growable struct-of-arrays store for recorded actions.
+ * Each field of {@link MouseAction} lives in its own primitive column, so recording
+ * and replaying millions of events does not allocate an object per event.
+ */
+public class MacroTrack implements MacroSource {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] x;
+    private int[] y;
+    private int[] type;
+    private int[] button;
+    private int[] wheelAmount;
+    private int[] keyCode;
+    private int[] awtKeyCode;
+    private long[] delay;
+    private int size = 0;
+
+    public MacroTrack() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public MacroTrack(int initialCapacity) {
+        allocate(Math.max(initialCapacity, 16));
+    }
+
+    private void allocate(int capacity) {
+        x = new int[capacity];
+        y = new int[capacity];
+        type = new int[capacity];
+        button = new int[capacity];
+        wheelAmount = new int[capacity];
+        keyCode = new int[capacity];
+        awtKeyCode = new int[capacity];
+        delay = new long[capacity];
+    }
+
+    private void resize(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        type = Arrays.copyOf(type, capacity);
+        button = Arrays.copyOf(button, capacity);
+        wheelAmount = Arrays.copyOf(wheelAmount, capacity);
+        keyCode = Arrays.copyOf(keyCode, capacity);
+        awtKeyCode = Arrays.copyOf(awtKeyCode, capacity);
+        delay = Arrays.copyOf(delay, capacity);
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        int capacity = x.length;
+        if (minCapacity <= capacity) return;
+        // 按1.5倍增长，溢出时退回到所需的最小容量
+        int newCapacity = capacity + (capacity >> 1);
+        if (newCapacity < minCapacity || newCapacity < 0) newCapacity = minCapacity;
+        resize(newCapacity);
+    }
+
+    public void add(int x, int y, int type, int button, long delay, int wheelAmount, int keyCode, int awtKeyCode) {
+        ensureCapacity(size + 1);
+        int i = size;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.type[i] = type;
+        this.button[i] = button;
+        this.delay[i] = delay;
+        this.wheelAmount[i] = wheelAmount;
+        this.keyCode[i] = keyCode;
+        this.awtKeyCode[i] = awtKeyCode;
+        size = i + 1;
+    }
+
+    public void add(MouseAction a) {
+        add(a.x, a.y, a.type, a.button, a.delay, a.wheelAmount, a.keyCode, a.awtKeyCode);
+    }
+
+    public void addAll(MacroTrack other) {
+        int n = other.size;
+        ensureCapacity(size + n);
+        System.arraycopy(other.x, 0, x, size, n);
+        System.arraycopy(other.y, 0, y, size, n);
+        System.arraycopy(other.type, 0, type, size, n);
+        System.arraycopy(other.button, 0, button, size, n);
+        System.arraycopy(other.delay, 0, delay, size, n);
+        System.arraycopy(other.wheelAmount, 0, wheelAmount, size, n);
+        System.arraycopy(other.keyCode, 0, keyCode, size, n);
+        System.arraycopy(other.awtKeyCode, 0, awtKeyCode, size, n);
+        size += n;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Releases the unused tail of every column, e.g. after a recording has finished.
+     */
+    public void trimToSize() {
+        if (x.length > size) resize(Math.max(size, 16));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long getActionCount() {
+        return size;
+    }
+
+    public int getX(int i) { return x[i]; }
+    public int getY(int i) { return y[i]; }
+    public int getType(int i) { return type[i]; }
+    public int getButton(int i) { return button[i]; }
+    public long getDelay(int i) { return delay[i]; }
+    public int getWheelAmount(int i) { return wheelAmount[i]; }
+    public int getKeyCode(int i) { return keyCode[i]; }
+    public int getAwtKeyCode(int i) { return awtKeyCode[i]; }
+
+    /**
+     * Materializes a single action; intended for inspection, not for hot paths.
+     */
+    public MouseAction get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        return new MouseAction(x[i], y[i], type[i], button[i], delay[i], wheelAmount[i], keyCode[i], awtKeyCode[i]);
+    }
+
+    public long getDurationMillis() {
+        long total = 0;
+        for (int i = 0; i < size; i++) total += Math.max(0, delay[i]);
+        return total;
+    }
+
+    /**
+     * Approximate heap footprint of the column arrays, including unused capacity.
+     */
+    public long getFootprintBytes() {
+        return (long) x.length * (7 * Integer.BYTES + Long.BYTES);
+    }
+
+    @Override
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    public class Cursor implements ActionCursor {
+        private int index = -1;
+
+        @Override
+        public boolean next() {
+            if (index + 1 >= size) return false;
+            index++;
+            return true;
+        }
+
+        @Override
+        public void rewind() {
+            index = -1;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        @Override public int x() { return x[index]; }
+        @Override public int y() { return y[index]; }
+        @Override public int type() { return type[index]; }
+        @Override public int button() { return button[index]; }
+        @Override public long delay() { return delay[index]; }
+        @Override public int wheelAmount() { return wheelAmount[index]; }
+        @Override public int keyCode() { return keyCode[index]; }
+        @Override public int awtKeyCode() { return awtKeyCode[index]; }
+    }
+}
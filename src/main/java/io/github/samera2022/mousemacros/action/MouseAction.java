@@ -1,5 +1,7 @@
 package io.github.samera2022.mousemacros.action;
 
+import io.github.samera2022.mousemacros.playback.InputSink;
+import io.github.samera2022.mousemacros.playback.RobotInputSink;
 import io.github.samera2022.mousemacros.util.ScreenUtil;
 
 import java.awt.*;
@@ -33,41 +35,48 @@ public class MouseAction {
         this.awtKeyCode = awtKeyCode;
     }
     public void perform() {
+        perform(x, y, type, button, wheelAmount, keyCode, awtKeyCode);
+    }
+    // 直接按字段回放，供列式存储（MacroTrack）使用，无需创建MouseAction对象
+    public static void perform(int x, int y, int type, int button, int wheelAmount, int keyCode, int awtKeyCode) {
         try {
-            if (robotInstance == null) {
-                robotInstance = new Robot();
-            }
-            Robot robot = robotInstance;
-            Point global = ScreenUtil.denormalizeFromVirtualOrigin(x, y);
+            perform(x, y, type, button, wheelAmount, keyCode, awtKeyCode, RobotInputSink.getDefault());
+        } catch (AWTException e) {
+            // 忽略异常
+        }
+    }
+    public static void perform(int x, int y, int type, int button, int wheelAmount, int keyCode, int awtKeyCode, InputSink sink) {
+        try {
+            ScreenUtil.Geometry geometry = ScreenUtil.getGeometry();
+            int robotX = geometry.toRobotX(x);
+            int robotY = geometry.toRobotY(y);
             if (type == 3) { // 滚轮事件
-                robot.mouseMove(global.x, global.y);
-                robot.mouseWheel(wheelAmount);
+                sink.mouseMove(robotX, robotY);
+                sink.mouseWheel(wheelAmount);
                 return;
             }
             if (type == 10) { // 键盘按下
-                robot.keyPress(awtKeyCode > 0 ? awtKeyCode : keyCode);
+                sink.keyPress(awtKeyCode > 0 ? awtKeyCode : keyCode);
                 return;
             }
             if (type == 11) { // 键盘释放
-                robot.keyRelease(awtKeyCode > 0 ? awtKeyCode : keyCode);
+                sink.keyRelease(awtKeyCode > 0 ? awtKeyCode : keyCode);
                 return;
             }
-            robot.mouseMove(global.x, global.y);
+            sink.mouseMove(robotX, robotY);
             switch (type) {
                 case 1: // press
-                    robot.mousePress(getAWTButtonMask(button));
+                    sink.mousePress(getAWTButtonMask(button));
                     break;
                 case 2: // release
-                    robot.mouseRelease(getAWTButtonMask(button));
+                    sink.mouseRelease(getAWTButtonMask(button));
                     break;
             }
         } catch (Exception e) {
             // 忽略异常
         }
     }
-    // 共享Robot实例，避免频繁创建
-    private static Robot robotInstance = null;
-    private int getAWTButtonMask(int btn) {
+    private static int getAWTButtonMask(int btn) {
         // btn: 1=左键，2=中键，3=右键
         switch (btn) {
             case 1: return java.awt.event.InputEvent.BUTTON1_DOWN_MASK; // 左键
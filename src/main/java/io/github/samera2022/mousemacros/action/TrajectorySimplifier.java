@@ -0,0 +1,91 @@
+package io.github.samera2022.mousemacros.action;
+
+import java.util.Arrays;
+
+/**
+ * Post-record compaction of mouse move runs (consecutive type 0 actions between press, release,
+ * wheel and key events) with a time-aware Ramer–Douglas–Peucker pass.
+ * <p>
+ * A move is dropped only if, at its own timestamp, it lies within the tolerance of the position
+ * linearly interpolated in time between the moves that are kept (synchronized Euclidean distance),
+ * so both the path and the speed along it are preserved. Kept actions are re-timed from their
+ * original absolute timestamps, so the total duration and the time of every non-move event stay exact.
+ */
+public class TrajectorySimplifier {
+
+    public static MacroTrack simplify(MacroTrack track, double tolerancePx) {
+        int n = track.size();
+        // 每个动作相对于录制开始的绝对时间
+        long[] time = new long[n];
+        long t = 0;
+        for (int i = 0; i < n; i++) {
+            t += track.getDelay(i);
+            time[i] = t;
+        }
+        boolean[] keep = new boolean[n];
+        double toleranceSq = tolerancePx * tolerancePx;
+        int[] stack = new int[64];
+        int i = 0;
+        while (i < n) {
+            if (track.getType(i) != 0) {
+                keep[i++] = true;
+                continue;
+            }
+            int start = i;
+            while (i < n && track.getType(i) == 0) i++;
+            stack = simplifyRun(track, time, keep, start, i - 1, toleranceSq, stack);
+        }
+
+        int kept = 0;
+        for (boolean k : keep) if (k) kept++;
+        MacroTrack result = new MacroTrack(kept);
+        long previous = 0;
+        for (int j = 0; j < n; j++) {
+            if (!keep[j]) continue;
+            result.add(track.getX(j), track.getY(j), track.getType(j), track.getButton(j), time[j] - previous,
+                    track.getWheelAmount(j), track.getKeyCode(j), track.getAwtKeyCode(j));
+            previous = time[j];
+        }
+        return result;
+    }
+
+    // 用显式栈代替递归，长拖拽轨迹也不会栈溢出
+    private static int[] simplifyRun(MacroTrack track, long[] time, boolean[] keep, int first, int last,
+                                     double toleranceSq, int[] stack) {
+        keep[first] = true;
+        keep[last] = true;
+        int top = 0;
+        stack[top++] = first;
+        stack[top++] = last;
+        while (top > 0) {
+            int hi = stack[--top];
+            int lo = stack[--top];
+            if (hi - lo < 2) continue;
+            int x0 = track.getX(lo), y0 = track.getY(lo);
+            int dx = track.getX(hi) - x0, dy = track.getY(hi) - y0;
+            long dt = time[hi] - time[lo];
+            double maxDistSq = -1;
+            int split = -1;
+            for (int k = lo + 1; k < hi; k++) {
+                // 按时间比例插值；时间相同时退化为按序号插值
+                double f = dt > 0 ? (double) (time[k] - time[lo]) / dt : (double) (k - lo) / (hi - lo);
+                double ex = track.getX(k) - (x0 + f * dx);
+                double ey = track.getY(k) - (y0 + f * dy);
+                double distSq = ex * ex + ey * ey;
+                if (distSq > maxDistSq) {
+                    maxDistSq = distSq;
+                    split = k;
+                }
+            }
+            if (maxDistSq > toleranceSq) {
+                keep[split] = true;
+                if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = lo;
+                stack[top++] = split;
+                stack[top++] = split;
+                stack[top++] = hi;
+            }
+        }
+        return stack;
+    }
+}
@@ -4,26 +4,23 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 import io.github.samera2022.mousemacros.Localizer;
-import io.github.samera2022.mousemacros.constant.OtherConsts;
+import io.github.samera2022.mousemacros.manager.PersistenceService;
 import io.github.samera2022.mousemacros.ui.frame.settings.SettingsRegistry;
 import io.github.samera2022.mousemacros.util.FileUtil;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
 import java.nio.file.*;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class ConfigManager {
     public static String CONFIG_DIR;
     private static final String CONFIG_PATH;
     private static final String WHITELIST_PATH;
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    // 由EDT读写；其他线程通过snapshot()读取
     private static final Map<String, Object> settings = new HashMap<>();
+    private static volatile ConfigSnapshot snapshot;
 
     public static final int RFM_MIXED = 1;
     public static final int RFM_STANDARDIZED = 2;
@@ -52,21 +49,39 @@ public class ConfigManager {
             Map<String, Object> loadedSettings = gson.fromJson(json, type);
             settings.clear();
             settings.putAll(loadedSettings);
+            // 旧版本的配置文件中可能缺少新增的设置项
+            for (SettingsRegistry setting : SettingsRegistry.values()) {
+                if (setting.defaultValue != null) settings.putIfAbsent(setting.i18nKey, setting.defaultValue);
+            }
+            publish();
         } catch (IOException e) {
             resetToDefault();
             saveConfig();
         }
     }
 
+    /**
+     * @return the settings as of the last load or save, safe to read from any thread. Changes made with
+     *         {@link #set} become visible here on the next {@link #saveConfig()}.
+     */
+    public static ConfigSnapshot snapshot() {
+        return snapshot;
+    }
+
+    private static void publish() {
+        snapshot = new ConfigSnapshot(settings);
+    }
+
+    /**
+     * Queues the current settings to be written by {@link PersistenceService}; repeated calls in quick
+     * succession are coalesced into one write.
+     */
     public static void saveConfig() {
-        try {
-            java.io.File dir = new java.io.File(CONFIG_DIR);
-            if (!dir.exists()) dir.mkdirs();
-            String json = gson.toJson(settings);
-            FileUtil.writeFile(CONFIG_PATH, json);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        publish();
+        // 只在调用线程上做浅拷贝，序列化和写盘交给后台线程
+        Map<String, Object> copy = new HashMap<>(settings);
+        copy.replaceAll((key, value) -> value instanceof Map ? new HashMap<>((Map<?, ?>) value) : value);
+        PersistenceService.schedule(Paths.get(CONFIG_PATH), () -> gson.toJson(copy));
     }
 
     public static void resetToDefault() {
@@ -89,26 +104,48 @@ public class ConfigManager {
     }
 
     public static boolean getBoolean(String key) {
-        Object value = settings.get(key);
+        return toBoolean(settings.get(key));
+    }
+
+    public static int getInt(String key) {
+        return toInt(settings.get(key));
+    }
+
+    public static double getDouble(String key) {
+        return toDouble(settings.get(key));
+    }
+
+    static boolean toBoolean(Object value) {
         if (value instanceof Boolean) {
             return (Boolean) value;
         }
         return false;
     }
 
-    public static int getInt(String key) {
-        Object value = settings.get(key);
+    static int toInt(Object value) {
         if (value instanceof Number) {
             return ((Number) value).intValue();
         }
+        // 文本框类设置以字符串保存
+        if (value instanceof String) {
+            try {
+                return (int) Double.parseDouble(((String) value).trim());
+            } catch (NumberFormatException ignored) {
+            }
+        }
         return 0;
     }
 
-    public static double getDouble(String key) {
-        Object value = settings.get(key);
+    static double toDouble(Object value) {
         if (value instanceof Number) {
             return ((Number) value).doubleValue();
         }
+        if (value instanceof String) {
+            try {
+                return Double.parseDouble(((String) value).trim());
+            } catch (NumberFormatException ignored) {
+            }
+        }
         return 0.0;
     }
 
@@ -128,37 +165,10 @@ public class ConfigManager {
         }
         return new HashMap<>();
     }
+    /**
+     * @return the bundled language codes, from the manifest generated at build time.
+     */
     public static String[] getAvailableLangs() {
-        List<String> langs = new ArrayList<>();
-        try {
-            String resPath = OtherConsts.RELATIVE_PATH + "langs/";
-            URL resource = Localizer.class.getResource(resPath);
-            if (resource != null) {
-                URI uri = resource.toURI();
-                Path myPath;
-                if (uri.getScheme().equals("jar")) {
-                    FileSystem fileSystem;
-                    try {
-                        fileSystem = FileSystems.getFileSystem(uri);
-                    } catch (FileSystemNotFoundException e) {
-                        fileSystem = FileSystems.newFileSystem(uri, Collections.emptyMap());
-                    }
-                    myPath = fileSystem.getPath(resPath);
-                } else {
-                    myPath = Paths.get(uri);
-                }
-                try (Stream<Path> paths = Files.walk(myPath, 1)) {
-                    langs = paths
-                            .filter(Files::isRegularFile)
-                            .map(p -> p.getFileName().toString())
-                            .filter(name -> name.endsWith(".json"))
-                            .map(name -> name.substring(0, name.length() - 5))
-                            .collect(Collectors.toList());
-                }
-            }
-        } catch (IOException | URISyntaxException e) {
-            e.printStackTrace();
-        }
-        return langs.toArray(new String[0]);
+        return Localizer.getAvailableLangs();
     }
 }
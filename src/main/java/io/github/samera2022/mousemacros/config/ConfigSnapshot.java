@@ -0,0 +1,52 @@
+package io.github.samera2022.mousemacros.config;
+
+import io.github.samera2022.mousemacros.ui.frame.settings.SettingsRegistry;
+
+import java.util.Map;
+
+/**
+ * Immutable, typed copy of every {@link SettingsRegistry} setting, indexed by ordinal. Each value is
+ * converted once, when the snapshot is built, into all four representations with the same rules as the
+ * ConfigManager getters, so a read is a plain array access with no map lookup, boxing or parsing.
+ * <p>
+ * ConfigManager publishes a new snapshot through a volatile reference whenever the config is loaded or
+ * saved; a reader that keeps one instance sees a consistent set of values.
+ */
+public final class ConfigSnapshot {
+    private final boolean[] booleans;
+    private final int[] ints;
+    private final double[] doubles;
+    private final String[] strings;
+
+    ConfigSnapshot(Map<String, Object> settings) {
+        SettingsRegistry[] registry = SettingsRegistry.values();
+        booleans = new boolean[registry.length];
+        ints = new int[registry.length];
+        doubles = new double[registry.length];
+        strings = new String[registry.length];
+        for (SettingsRegistry setting : registry) {
+            Object value = settings.get(setting.i18nKey);
+            int i = setting.ordinal();
+            booleans[i] = ConfigManager.toBoolean(value);
+            ints[i] = ConfigManager.toInt(value);
+            doubles[i] = ConfigManager.toDouble(value);
+            strings[i] = value != null ? value.toString() : null;
+        }
+    }
+
+    public boolean getBoolean(SettingsRegistry setting) {
+        return booleans[setting.ordinal()];
+    }
+
+    public int getInt(SettingsRegistry setting) {
+        return ints[setting.ordinal()];
+    }
+
+    public double getDouble(SettingsRegistry setting) {
+        return doubles[setting.ordinal()];
+    }
+
+    public String getString(SettingsRegistry setting) {
+        return strings[setting.ordinal()];
+    }
+}
@@ -6,16 +6,9 @@ import com.github.kwhat.jnativehook.mouse.NativeMouseEvent;
 import com.github.kwhat.jnativehook.mouse.NativeMouseInputListener;
 import com.github.kwhat.jnativehook.mouse.NativeMouseWheelEvent;
 import com.github.kwhat.jnativehook.mouse.NativeMouseWheelListener;
-import io.github.samera2022.mousemacros.Localizer;
-import io.github.samera2022.mousemacros.action.MouseAction;
 import io.github.samera2022.mousemacros.manager.MacroManager;
 import io.github.samera2022.mousemacros.ui.frame.settings.HotkeyDialog;
-import io.github.samera2022.mousemacros.util.OtherUtil;
-import io.github.samera2022.mousemacros.util.ScreenUtil;
 
-import java.awt.*;
-
-import static io.github.samera2022.mousemacros.manager.LogManager.log;
 import static io.github.samera2022.mousemacros.ui.frame.MainFrame.*;
 
 public class GlobalMouseListener implements NativeKeyListener, NativeMouseInputListener, NativeMouseWheelListener {
@@ -43,13 +36,7 @@ public class GlobalMouseListener implements NativeKeyListener, NativeMouseInputL
                 MacroManager.pause();
             }
         } else if (MacroManager.isRecording() && (!HotkeyDialog.inHotKeyDialog)) {
-            long now = System.currentTimeMillis();
-            long delay = now - MacroManager.getLastTime();
-
-            int awtKeyCode = toAwtKeyCode(e.getKeyCode());
-            MacroManager.recordAction(new MouseAction(0, 0, 10, 0, delay, 0, e.getKeyCode(), awtKeyCode));
-            MacroManager.setLastTime(now);
-            log(Localizer.get("log.recording_key_pressed") + OtherUtil.getNativeKeyDisplayText(e.getKeyCode()));
+            InputRecorder.offer(10, e.getKeyCode(), 0, 0);
         }
     }
 
@@ -58,13 +45,7 @@ public class GlobalMouseListener implements NativeKeyListener, NativeMouseInputL
         if (MacroManager.isReplayingInput()) return;
 
         if (MacroManager.isRecording() && (!HotkeyDialog.inHotKeyDialog)) {
-            long now = System.currentTimeMillis();
-            long delay = now - MacroManager.getLastTime();
-
-            int awtKeyCode = toAwtKeyCode(e.getKeyCode());
-            MacroManager.recordAction(new MouseAction(0, 0, 11, 0, delay, 0, e.getKeyCode(), awtKeyCode));
-            MacroManager.setLastTime(now);
-            log(Localizer.get("log.recording_key_released") + OtherUtil.getNativeKeyDisplayText(e.getKeyCode()));
+            InputRecorder.offer(11, e.getKeyCode(), 0, 0);
         }
     }
 
@@ -75,16 +56,7 @@ public class GlobalMouseListener implements NativeKeyListener, NativeMouseInputL
         if (MacroManager.isReplayingInput()) return;
 
         if (MacroManager.isRecording() && (!HotkeyDialog.inHotKeyDialog)) {
-            Point p = ScreenUtil.normalizeToVirtualOrigin(e.getX(), e.getY());
-            long now = System.currentTimeMillis();
-            long delay = now - MacroManager.getLastTime();
-            int btn = e.getButton();
-            int macroBtn = btn == 2 ? 3 : btn == 3 ? 2 : btn;
-
-            String btnName = macroBtn == 1 ? Localizer.get("log.mouse_left") : macroBtn == 2 ? Localizer.get("log.mouse_middle") : Localizer.get("log.mouse_right");
-            MacroManager.recordAction(new MouseAction(p.x, p.y, 1, macroBtn, delay));
-            MacroManager.setLastTime(now);
-            log(Localizer.get("log.recording_mouse_pressed")+" ["+btnName+"] (" + p.x + "," + p.y + ")");
+            InputRecorder.offer(1, e.getX(), e.getY(), e.getButton());
         }
     }
 
@@ -93,16 +65,7 @@ public class GlobalMouseListener implements NativeKeyListener, NativeMouseInputL
         if (MacroManager.isReplayingInput()) return;
 
         if (MacroManager.isRecording() && (!HotkeyDialog.inHotKeyDialog)) {
-            Point p = ScreenUtil.normalizeToVirtualOrigin(e.getX(), e.getY());
-            long now = System.currentTimeMillis();
-            long delay = now - MacroManager.getLastTime();
-            int btn = e.getButton();
-            int macroBtn = btn == 2 ? 3 : btn == 3 ? 2 : btn;
-
-            String btnName = macroBtn == 1 ? Localizer.get("log.mouse_left") : macroBtn == 2 ? Localizer.get("log.mouse_middle") : Localizer.get("log.mouse_right");
-            MacroManager.recordAction(new MouseAction(p.x, p.y, 2, macroBtn, delay));
-            MacroManager.setLastTime(now);
-            log(Localizer.get("log.recording_mouse_released")+" ["+btnName+"] (" + p.x + "," + p.y + ")");
+            InputRecorder.offer(2, e.getX(), e.getY(), e.getButton());
         }
     }
 
@@ -111,14 +74,7 @@ public class GlobalMouseListener implements NativeKeyListener, NativeMouseInputL
         if (MacroManager.isReplayingInput()) return;
 
         if (MacroManager.isRecording() && (!HotkeyDialog.inHotKeyDialog)) {
-            Point p = ScreenUtil.normalizeToVirtualOrigin(e.getX(), e.getY());
-            long now = System.currentTimeMillis();
-            long delay = now - MacroManager.getLastTime();
-            int wheelAmount = e.getWheelRotation();
-
-            MacroManager.recordAction(new MouseAction(p.x, p.y, 3, 0, delay, wheelAmount));
-            MacroManager.setLastTime(now);
-            log(Localizer.get("log.recording_scroll_msg1") + " ("+ Localizer.get("log.recording_scroll_msg2") + wheelAmount + ")");
+            InputRecorder.offer(3, e.getX(), e.getY(), e.getWheelRotation());
         }
     }
 
@@ -127,17 +83,7 @@ public class GlobalMouseListener implements NativeKeyListener, NativeMouseInputL
         if (MacroManager.isReplayingInput()) return;
 
         if (MacroManager.isRecording() && (!HotkeyDialog.inHotKeyDialog)) {
-            Point p = ScreenUtil.normalizeToVirtualOrigin(e.getX(), e.getY());
-            long now = System.currentTimeMillis();
-
-            // Optimization: Only record move if it's been a short while OR moved a significant distance
-            var actions = MacroManager.getActions();
-            if (actions.isEmpty() || p.distance(actions.get(actions.size() - 1).x, actions.get(actions.size() - 1).y) > 3 || (now - MacroManager.getLastTime()) > 20) {
-                long delay = now - MacroManager.getLastTime();
-
-                MacroManager.recordAction(new MouseAction(p.x, p.y, 0, 0, delay));
-                MacroManager.setLastTime(now);
-            }
+            InputRecorder.offer(0, e.getX(), e.getY(), 0);
         }
     }
 
@@ -146,7 +92,7 @@ public class GlobalMouseListener implements NativeKeyListener, NativeMouseInputL
         nativeMouseMoved(e);
     }
 
-    private int toAwtKeyCode(int nativeKeyCode) {
+    static int toAwtKeyCode(int nativeKeyCode) {
         // JNativeHook -> AWT KeyEvent 映射（常用键，需补充完整）
         switch (nativeKeyCode) {
             case NativeKeyEvent.VC_A: return java.awt.event.KeyEvent.VK_A;
@@ -0,0 +1,106 @@
+package io.github.samera2022.mousemacros.listener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated single-producer/single-consumer ring of raw input events.
+ * The producer is the JNativeHook dispatch thread; an event is stored column-wise,
+ * so publishing it costs a few array stores and one volatile write.
+ */
+public class InputEventRing {
+    /**
+     * Receives drained events in publication order.
+     */
+    public interface Handler {
+        /**
+         * @param seq the event's sequence number, equal to {@link #getPublishedCount()} just before it was published.
+         */
+        void onEvent(long seq, int type, int a, int b, int c, long timeMillis);
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final int[] type;
+    private final int[] a;
+    private final int[] b;
+    private final int[] c;
+    private final long[] time;
+
+    // 下一个写入/读取的序号，各自只由一个线程推进
+    private final AtomicLong producerSeq = new AtomicLong();
+    private final AtomicLong consumerSeq = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // 生产者缓存的消费进度，避免每次写入都读取另一个线程的计数器
+    private long cachedConsumerSeq = 0;
+
+    public InputEventRing(int capacityPowerOfTwo) {
+        if (Integer.bitCount(capacityPowerOfTwo) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacityPowerOfTwo);
+        }
+        capacity = capacityPowerOfTwo;
+        mask = capacityPowerOfTwo - 1;
+        type = new int[capacity];
+        a = new int[capacity];
+        b = new int[capacity];
+        c = new int[capacity];
+        time = new long[capacity];
+    }
+
+    /**
+     * Publishes one event. Must only be called from the producer thread.
+     * @return false if the ring was full and the event was dropped.
+     */
+    public boolean offer(int type, int a, int b, int c, long timeMillis) {
+        long seq = producerSeq.get();
+        if (seq - cachedConsumerSeq >= capacity) {
+            cachedConsumerSeq = consumerSeq.get();
+            if (seq - cachedConsumerSeq >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+        int i = (int) seq & mask;
+        this.type[i] = type;
+        this.a[i] = a;
+        this.b[i] = b;
+        this.c[i] = c;
+        this.time[i] = timeMillis;
+        // 完整的volatile写：随后读取消费者的挂起标记时不会被重排到发布之前
+        producerSeq.set(seq + 1);
+        return true;
+    }
+
+    /**
+     * Hands up to {@code limit} pending events to the handler. Must only be called from the consumer thread.
+     * @return the number of events drained.
+     */
+    public int drain(Handler handler, int limit) {
+        long seq = consumerSeq.get();
+        int n = (int) Math.min(limit, producerSeq.get() - seq);
+        for (int k = 0; k < n; k++) {
+            int i = (int) (seq + k) & mask;
+            handler.onEvent(seq + k, type[i], a[i], b[i], c[i], time[i]);
+        }
+        if (n > 0) consumerSeq.lazySet(seq + n);
+        return n;
+    }
+
+    public long getPublishedCount() {
+        return producerSeq.get();
+    }
+
+    public long getConsumedCount() {
+        return consumerSeq.get();
+    }
+
+    /**
+     * Returns and resets the number of events dropped because the ring was full.
+     */
+    public long takeDroppedCount() {
+        return dropped.getAndSet(0);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.samera2022.mousemacros.listener;
+
+import io.github.samera2022.mousemacros.LangKeys;
+import io.github.samera2022.mousemacros.Localizer;
+import io.github.samera2022.mousemacros.action.MacroTrack;
+import io.github.samera2022.mousemacros.manager.LogMessage;
+import io.github.samera2022.mousemacros.manager.MacroManager;
+import io.github.samera2022.mousemacros.util.OtherUtil;
+import io.github.samera2022.mousemacros.util.ScreenUtil;
+
+import java.util.concurrent.locks.LockSupport;
+
+import static io.github.samera2022.mousemacros.manager.LogManager.log;
+
+/**
+ * Consumer side of the capture pipeline. The native hook callbacks only publish raw
+ * events into {@link InputEventRing}; a dedicated daemon thread normalizes coordinates,
+ * filters redundant moves, computes delays, stores the actions and writes the log lines.
+ * <p>
+ * Only events whose ring sequence number lies inside the current recording's window are stored. The hook
+ * thread may still publish an event it let through just before recording stopped; such an event lands past
+ * the window's end and is dropped instead of being appended to a track that is already finished.
+ */
+public class InputRecorder {
+    private static final int RING_CAPACITY = 1 << 16;
+    private static final int DRAIN_BATCH = 256;
+
+    private static final InputEventRing RING = new InputEventRing(RING_CAPACITY);
+    private static final InputEventRing.Handler HANDLER = InputRecorder::handle;
+    // 日志行中的按键名，输出时才取当前语言的文本
+    private static final LogMessage MOUSE_LEFT = LogMessage.of(LangKeys.LOG_MOUSE_LEFT);
+    private static final LogMessage MOUSE_MIDDLE = LogMessage.of(LangKeys.LOG_MOUSE_MIDDLE);
+    private static final LogMessage MOUSE_RIGHT = LogMessage.of(LangKeys.LOG_MOUSE_RIGHT);
+
+    private static final Thread CONSUMER;
+    // 消费线程空闲挂起时为true，生产者据此决定是否唤醒
+    private static volatile boolean consumerParked = false;
+    // 本次录制接受的序号区间[acceptFrom, acceptUntil)，不在录制时为空区间
+    private static volatile long acceptFrom = Long.MAX_VALUE;
+    private static volatile long acceptUntil = Long.MAX_VALUE;
+
+    static {
+        CONSUMER = new Thread(InputRecorder::consume, "input-recorder");
+        CONSUMER.setDaemon(true);
+        CONSUMER.start();
+    }
+
+    /**
+     * Publishes a raw hook event; called on the JNativeHook dispatch thread only.
+     * For mouse events {@code a}/{@code b} are the screen coordinates and {@code c} the button
+     * or wheel rotation, for key events {@code a} is the native key code.
+     */
+    public static void offer(int type, int a, int b, int c) {
+        RING.offer(type, a, b, c, System.currentTimeMillis());
+        if (consumerParked) LockSupport.unpark(CONSUMER);
+    }
+
+    /**
+     * Opens the recording window; call before recording is switched on.
+     */
+    public static void begin() {
+        // 先推进起点再放开终点，中间状态下区间为空，不会误收上次录制残留的事件
+        acceptFrom = RING.getPublishedCount();
+        acceptUntil = Long.MAX_VALUE;
+    }
+
+    /**
+     * Closes the recording window after recording was switched off and blocks until every event
+     * published before that has been stored; anything published later is dropped.
+     */
+    public static void end() {
+        long target = RING.getPublishedCount();
+        acceptUntil = target;
+        while (RING.getConsumedCount() < target) {
+            LockSupport.parkNanos(100_000L);
+        }
+        long dropped = RING.takeDroppedCount();
+        if (dropped > 0) {
+            log(Localizer.get("log.recording_events_dropped") + dropped);
+        }
+    }
+
+    private static void consume() {
+        while (true) {
+            if (RING.drain(HANDLER, DRAIN_BATCH) == 0) {
+                // 没有事件时一直挂起，直到offer唤醒；先标记再检查，避免丢失唤醒
+                consumerParked = true;
+                if (RING.getPublishedCount() == RING.getConsumedCount()) LockSupport.park();
+                consumerParked = false;
+            }
+        }
+    }
+
+    private static long distanceSq(int x1, int y1, int x2, int y2) {
+        long dx = x1 - x2;
+        long dy = y1 - y2;
+        return dx * dx + dy * dy;
+    }
+
+    private static void handle(long seq, int type, int a, int b, int c, long now) {
+        if (seq < acceptFrom || seq >= acceptUntil) return;
+        try {
+            long delay = now - MacroManager.getLastTime();
+            ScreenUtil.Geometry geometry = ScreenUtil.getGeometry();
+            switch (type) {
+                case 0: { // 移动
+                    int x = geometry.normalizeX(a);
+                    int y = geometry.normalizeY(b);
+                    // Optimization: Only record move if it's been a short while OR moved a significant distance
+                    MacroTrack track = MacroManager.getTrack();
+                    int last = track.size() - 1;
+                    if (last < 0 || distanceSq(x, y, track.getX(last), track.getY(last)) > 9 || delay > 20) {
+                        MacroManager.recordAction(x, y, 0, 0, delay, 0, 0, 0);
+                        MacroManager.setLastTime(now);
+                    }
+                    break;
+                }
+                case 1: // 按下
+                case 2: { // 松开
+                    int x = geometry.normalizeX(a);
+                    int y = geometry.normalizeY(b);
+                    int macroBtn = c == 2 ? 3 : c == 3 ? 2 : c;
+                    MacroManager.recordAction(x, y, type, macroBtn, delay, 0, 0, 0);
+                    MacroManager.setLastTime(now);
+                    log(LogMessage.ofInput(type == 1 ? LangKeys.LOG_RECORDING_MOUSE_PRESSED : LangKeys.LOG_RECORDING_MOUSE_RELEASED,
+                            macroBtn == 1 ? MOUSE_LEFT : macroBtn == 2 ? MOUSE_MIDDLE : MOUSE_RIGHT, x, y));
+                    break;
+                }
+                case 3: { // 滚轮
+                    MacroManager.recordAction(geometry.normalizeX(a), geometry.normalizeY(b), 3, 0, delay, c, 0, 0);
+                    MacroManager.setLastTime(now);
+                    log(LogMessage.ofInput(LangKeys.LOG_RECORDING_SCROLL, c));
+                    break;
+                }
+                case 10: // 键盘按下
+                case 11: { // 键盘释放
+                    MacroManager.recordAction(0, 0, type, 0, delay, 0, a, GlobalMouseListener.toAwtKeyCode(a));
+                    MacroManager.setLastTime(now);
+                    log(LogMessage.ofInput(type == 10 ? LangKeys.LOG_RECORDING_KEY_PRESSED : LangKeys.LOG_RECORDING_KEY_RELEASED,
+                            OtherUtil.getNativeKeyDisplayText(a)));
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            // 单个事件处理失败不能终止消费线程
+            e.printStackTrace();
+        }
+    }
+}
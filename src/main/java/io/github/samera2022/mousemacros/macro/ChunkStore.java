@@ -0,0 +1,423 @@
+package io.github.samera2022.mousemacros.macro;
+
+import io.github.samera2022.mousemacros.config.ConfigManager;
+import io.github.samera2022.mousemacros.config.ConfigSnapshot;
+import io.github.samera2022.mousemacros.ui.frame.settings.SettingsRegistry;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Optional deduplicating storage for macro files. The encoded macro is split into content-defined
+ * chunks (a gear rolling hash cuts wherever the content itself says so, so an identical segment yields
+ * identical chunks no matter what precedes it), each distinct chunk is kept once in the {@value #DIR_NAME}
+ * folder of the macro storage path, named by its SHA-256, and the macro file itself only holds a
+ * {@link Manifest} of chunk references.
+ * <p>
+ * Only macros saved inside the storage path are chunked, so every manifest is found by {@link #sweep()},
+ * which deletes the chunks none of them refers to. Saving a macro anywhere else writes a self-contained
+ * file, which is how a chunked macro is exported.
+ * <p>
+ * A manifest finds its chunks in the nearest {@value #DIR_NAME} folder above its own location, so the
+ * storage folder can be moved or the setting changed. Failing that, it falls back to the chunk folder
+ * recorded when it was saved.
+ * <pre>
+ * manifest: 'M' 'M' 'C' 'M', version (1 byte), chunk count (int), total length (long),
+ *           chunk folder at save time (modified UTF-8, since version 2),
+ *           then per chunk: length (int), SHA-256 (32 bytes)
+ * </pre>
+ * Reading a manifest streams the chunk files one after another, so nothing is materialized twice.
+ */
+public class ChunkStore {
+    public static final String DIR_NAME = ".chunks";
+    static final byte[] MANIFEST_MAGIC = {'M', 'M', 'C', 'M'};
+    private static final int MANIFEST_VERSION = 2;
+    private static final int HASH_LENGTH = 32;
+    // 清理时不删除最近写入或复用的块，它们可能属于尚未写出清单的保存
+    private static final long SWEEP_GRACE_MILLIS = 60 * 60 * 1000L;
+
+    // 平均约8KB一块，最小2KB，最大64KB
+    private static final int MIN_CHUNK = 2 << 10;
+    private static final int MAX_CHUNK = 64 << 10;
+    private static final long CUT_MASK = 0xFFF8_0000_0000_0000L;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // 固定种子的splitmix64，切分点必须在每次运行中都一致
+        long seed = 0x4D4D434D_00000001L;
+        for (int i = 0; i < GEAR.length; i++) {
+            long z = (seed += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    /**
+     * @return the chunk folder inside the macro storage path, or null if default storage is off or has no path.
+     */
+    public static File getDirectory() {
+        ConfigSnapshot config = ConfigManager.snapshot();
+        if (!config.getBoolean(SettingsRegistry.ENABLE_DEFAULT_STORAGE)) return null;
+        String path = config.getString(SettingsRegistry.DEFAULT_MMC_STORAGE_PATH);
+        if (path == null || path.isEmpty()) return null;
+        return new File(path, DIR_NAME);
+    }
+
+    /**
+     * @return whether the file lies inside the macro storage path.
+     */
+    public static boolean isInStorage(File file) throws IOException {
+        File dir = getDirectory();
+        if (dir == null) return false;
+        Path storage = dir.getParentFile().getCanonicalFile().toPath();
+        return file.getCanonicalFile().toPath().startsWith(storage);
+    }
+
+    /**
+     * @return whether a macro saved to the target should be written as a manifest.
+     */
+    public static boolean appliesTo(File target) throws IOException {
+        return ConfigManager.snapshot().getBoolean(SettingsRegistry.ENABLE_CHUNK_STORAGE) && isInStorage(target);
+    }
+
+    /**
+     * Checks the magic without consuming it; the stream must support mark/reset.
+     */
+    public static boolean isManifest(InputStream in) throws IOException {
+        in.mark(MANIFEST_MAGIC.length);
+        byte[] head = new byte[MANIFEST_MAGIC.length];
+        int n = in.readNBytes(head, 0, head.length);
+        in.reset();
+        return n == MANIFEST_MAGIC.length && Arrays.equals(head, MANIFEST_MAGIC);
+    }
+
+    /**
+     * @return a stream that stores everything written to it as chunks and, on close, writes the
+     *         manifest to {@code manifest} and closes it.
+     */
+    public static OutputStream create(OutputStream manifest) throws IOException {
+        File dir = getDirectory();
+        if (dir == null) throw new IOException("No macro storage path is set");
+        return new ChunkingOutputStream(dir, manifest);
+    }
+
+    /**
+     * Deletes the chunks that no manifest inside the storage path refers to. Nothing is deleted if any
+     * manifest cannot be read, since its chunks would otherwise be lost.
+     *
+     * @return the number of chunk files deleted.
+     */
+    public static int sweep() throws IOException {
+        File dir = getDirectory();
+        if (dir == null || !dir.isDirectory()) return 0;
+        Path chunks = dir.toPath();
+        // 标记：收集存储目录下所有清单引用的块
+        Set<String> live = new HashSet<>();
+        Files.walkFileTree(dir.getParentFile().toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                return d.equals(chunks) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!attrs.isRegularFile() || attrs.size() < MANIFEST_MAGIC.length) return FileVisitResult.CONTINUE;
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                    if (isManifest(in)) {
+                        for (byte[] hash : Manifest.read(in).hashes) live.add(toHex(hash));
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        // 清除：删除未被引用且超过宽限期的块和残留的临时文件
+        long cutoff = System.currentTimeMillis() - SWEEP_GRACE_MILLIS;
+        int deleted = 0;
+        File[] buckets = dir.listFiles(File::isDirectory);
+        if (buckets == null) return 0;
+        for (File bucket : buckets) {
+            File[] files = bucket.listFiles();
+            if (files == null) continue;
+            for (File file : files) {
+                if (live.contains(file.getName()) || file.lastModified() >= cutoff) continue;
+                if (file.delete()) deleted++;
+            }
+            bucket.delete();
+        }
+        return deleted;
+    }
+
+    private static File chunkFile(File dir, String hex) {
+        return new File(new File(dir, hex.substring(0, 2)), hex);
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return sb.toString();
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * The ordered chunk references of one macro.
+     */
+    public static final class Manifest {
+        private final int[] lengths;
+        private final byte[][] hashes;
+        private final long length;
+        // 保存时的块目录，版本1的清单没有记录
+        private final String directory;
+
+        private Manifest(int[] lengths, byte[][] hashes, long length, String directory) {
+            this.lengths = lengths;
+            this.hashes = hashes;
+            this.length = length;
+            this.directory = directory;
+        }
+
+        /**
+         * Reads a manifest from the current position, consuming exactly its bytes.
+         */
+        public static Manifest read(InputStream stream) throws IOException {
+            DataInputStream in = new DataInputStream(stream);
+            byte[] magic = new byte[MANIFEST_MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MANIFEST_MAGIC)) throw new IOException("Not a chunk manifest");
+            int version = in.readUnsignedByte();
+            if (version < 1 || version > MANIFEST_VERSION) throw new IOException("Unsupported chunk manifest version " + version);
+            int count = in.readInt();
+            long length = in.readLong();
+            String directory = version >= 2 ? in.readUTF() : null;
+            if (count < 0) throw new IOException("Corrupt chunk manifest");
+            int[] lengths = new int[count];
+            byte[][] hashes = new byte[count][HASH_LENGTH];
+            for (int i = 0; i < count; i++) {
+                lengths[i] = in.readInt();
+                in.readFully(hashes[i]);
+            }
+            return new Manifest(lengths, hashes, length, directory);
+        }
+
+        public static Manifest read(File file) throws IOException {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                return read(in);
+            }
+        }
+
+        /**
+         * @return the length of the reassembled macro in bytes.
+         */
+        public long getLength() {
+            return length;
+        }
+
+        public int getChunkCount() {
+            return lengths.length;
+        }
+
+        /**
+         * @return a stream over the reassembled macro; chunk files are opened one at a time.
+         */
+        public InputStream open() {
+            return open(null);
+        }
+
+        /**
+         * @param location the manifest file, whose ancestors are searched for the chunk folder first; may be null.
+         * @return a stream over the reassembled macro; chunk files are opened one at a time.
+         */
+        public InputStream open(File location) {
+            return new ChunkInputStream(this, locate(location));
+        }
+
+        // 依次尝试清单所在位置向上最近的块目录和保存时记录的块目录，优先选择含有第一块的那个
+        private File locate(File location) {
+            List<File> candidates = new ArrayList<>();
+            if (location != null) {
+                for (File d = location.getAbsoluteFile().getParentFile(); d != null; d = d.getParentFile()) {
+                    File dir = new File(d, DIR_NAME);
+                    if (dir.isDirectory()) candidates.add(dir);
+                }
+            }
+            if (directory != null && new File(directory).isDirectory()) candidates.add(new File(directory));
+            if (candidates.isEmpty()) return null;
+            if (lengths.length > 0) {
+                String first = toHex(hashes[0]);
+                for (File dir : candidates) {
+                    if (chunkFile(dir, first).isFile()) return dir;
+                }
+            }
+            return candidates.get(0);
+        }
+
+        private void write(OutputStream out) throws IOException {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+            data.write(MANIFEST_MAGIC);
+            data.writeByte(MANIFEST_VERSION);
+            data.writeInt(lengths.length);
+            data.writeLong(length);
+            data.writeUTF(directory);
+            for (int i = 0; i < lengths.length; i++) {
+                data.writeInt(lengths[i]);
+                data.write(hashes[i]);
+            }
+            data.flush();
+        }
+    }
+
+    private static final class ChunkingOutputStream extends OutputStream {
+        private final File dir;
+        private final OutputStream manifest;
+        private final MessageDigest digest;
+        private final byte[] buf = new byte[MAX_CHUNK];
+        private final List<Integer> lengths = new ArrayList<>();
+        private final List<byte[]> hashes = new ArrayList<>();
+        private int len = 0;
+        private long gear = 0;
+        private long total = 0;
+        private boolean closed = false;
+
+        ChunkingOutputStream(File dir, OutputStream manifest) throws IOException {
+            this.dir = dir;
+            this.manifest = manifest;
+            this.digest = sha256();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            buf[len++] = (byte) b;
+            gear = (gear << 1) + GEAR[b & 0xFF];
+            if ((len >= MIN_CHUNK && (gear & CUT_MASK) == 0) || len == MAX_CHUNK) cut();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int n) throws IOException {
+            for (int i = off, end = off + n; i < end; i++) {
+                int v = b[i] & 0xFF;
+                buf[len++] = (byte) v;
+                gear = (gear << 1) + GEAR[v];
+                if ((len >= MIN_CHUNK && (gear & CUT_MASK) == 0) || len == MAX_CHUNK) cut();
+            }
+        }
+
+        private void cut() throws IOException {
+            digest.update(buf, 0, len);
+            byte[] hash = digest.digest();
+            File file = chunkFile(dir, toHex(hash));
+            // 已有相同内容的块时直接引用，并刷新时间使其不会在清单写出前被清理
+            if (!file.isFile() || !file.setLastModified(System.currentTimeMillis())) {
+                File bucket = file.getParentFile();
+                if (!bucket.exists()) bucket.mkdirs();
+                File temp = File.createTempFile("chunk", ".tmp", bucket);
+                try {
+                    try (OutputStream out = new FileOutputStream(temp)) {
+                        out.write(buf, 0, len);
+                    }
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException ignored) {
+                    // 并发保存写入了同一块
+                } finally {
+                    Files.deleteIfExists(temp.toPath());
+                }
+            }
+            lengths.add(len);
+            hashes.add(hash);
+            total += len;
+            len = 0;
+            gear = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                if (len > 0) cut();
+                int[] l = new int[lengths.size()];
+                for (int i = 0; i < l.length; i++) l[i] = lengths.get(i);
+                new Manifest(l, hashes.toArray(new byte[0][]), total, dir.getAbsolutePath()).write(manifest);
+            } finally {
+                manifest.close();
+            }
+        }
+    }
+
+    private static final class ChunkInputStream extends InputStream {
+        private final Manifest manifest;
+        private final File dir;
+        private int next = 0;
+        private InputStream current;
+        private int remaining = 0;
+
+        ChunkInputStream(Manifest manifest, File dir) {
+            this.manifest = manifest;
+            this.dir = dir;
+        }
+
+        // 当前块读完后打开下一块，返回false表示已到结尾
+        private boolean advance() throws IOException {
+            while (remaining == 0) {
+                if (current != null) {
+                    boolean trailing = current.read() >= 0;
+                    current.close();
+                    current = null;
+                    if (trailing) throw new IOException("Chunk " + toHex(manifest.hashes[next - 1]) + " is longer than expected");
+                }
+                if (next == manifest.lengths.length) return false;
+                if (dir == null) {
+                    throw new FileNotFoundException(manifest.directory != null
+                            ? "The chunk folder of this macro no longer exists: " + manifest.directory
+                            : "No " + DIR_NAME + " folder found for this macro");
+                }
+                File file = chunkFile(dir, toHex(manifest.hashes[next]));
+                if (!file.isFile()) throw new FileNotFoundException("Missing chunk " + file.getName());
+                current = new FileInputStream(file);
+                remaining = manifest.lengths[next++];
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!advance()) return -1;
+            int b = current.read();
+            if (b < 0) throw new EOFException("Chunk " + toHex(manifest.hashes[next - 1]) + " is truncated");
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int n) throws IOException {
+            if (n == 0) return 0;
+            if (!advance()) return -1;
+            int r = current.read(b, off, Math.min(n, remaining));
+            if (r < 0) throw new EOFException("Chunk " + toHex(manifest.hashes[next - 1]) + " is truncated");
+            remaining -= r;
+            return r;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) current.close();
+            current = null;
+            next = manifest.lengths.length;
+            remaining = 0;
+        }
+    }
+}
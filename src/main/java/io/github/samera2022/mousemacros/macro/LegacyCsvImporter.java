@@ -0,0 +1,230 @@
+package io.github.samera2022.mousemacros.macro;
+
+import io.github.samera2022.mousemacros.action.MacroTrack;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Importer for the original comma separated .mmc format: one action per line with
+ * 5, 6, 7 or 8 columns (x, y, type, button, delay[, wheelAmount[, keyCode[, awtKeyCode]]]).
+ * <p>
+ * {@link #read(InputStream, LineErrorHandler)} reads the bytes in large blocks, cuts each block into
+ * chunks on line boundaries and parses the chunks in parallel on the common ForkJoinPool with an
+ * allocation-free number parser. Any line the fast parser does not accept is re-parsed the original way,
+ * so accepted lines, skipped lines and the reported errors (with their line numbers, in order) are
+ * exactly those of {@link #read(Reader, LineErrorHandler)}.
+ */
+public class LegacyCsvImporter {
+    private static final int BLOCK_SIZE = 16 << 20;
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Receives lines that could not be parsed; the line is skipped and reading continues.
+     */
+    public interface LineErrorHandler {
+        void onError(int lineNum, Exception ex);
+    }
+
+    public static MacroTrack read(Reader reader, LineErrorHandler errors) throws IOException {
+        MacroTrack track = new MacroTrack();
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, MmcFormat.BUFFER_SIZE);
+        int lineNum = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNum++;
+            try {
+                parseLine(line, track);
+            } catch (Exception ex) {
+                if (errors != null) errors.onError(lineNum, ex);
+            }
+        }
+        return track;
+    }
+
+    /**
+     * Parses UTF-8 bytes in parallel chunks; the stream is read to the end but not closed.
+     */
+    public static MacroTrack read(InputStream in, LineErrorHandler errors) throws IOException {
+        MacroTrack track = new MacroTrack();
+        // 小文件不必分配整块缓冲区
+        byte[] block = new byte[Math.max(CHUNK_SIZE, Math.min(BLOCK_SIZE, in.available() + 1))];
+        int filled = 0;
+        int lineOffset = 0;
+        boolean eof = false;
+        while (!eof) {
+            int n = in.readNBytes(block, filled, block.length - filled);
+            filled += n;
+            eof = filled < block.length;
+            // 只处理到最后一个换行符，剩余部分留到下一块
+            int end = eof ? filled : lastLineEnd(block, filled);
+            if (end < 0) {
+                // 单行超过整个缓冲区，扩大后继续读
+                block = Arrays.copyOf(block, block.length * 2);
+                continue;
+            }
+            lineOffset = parseBlock(block, end, track, errors, lineOffset);
+            System.arraycopy(block, end, block, 0, filled - end);
+            filled -= end;
+        }
+        return track;
+    }
+
+    // 返回最后一个'\n'之后的位置，找不到时返回-1
+    private static int lastLineEnd(byte[] buf, int limit) {
+        for (int i = limit - 1; i >= 0; i--) {
+            if (buf[i] == '\n') return i + 1;
+        }
+        return -1;
+    }
+
+    private static int parseBlock(byte[] buf, int limit, MacroTrack track, LineErrorHandler errors, int lineOffset) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < limit) {
+            int end = start + CHUNK_SIZE >= limit ? limit : nextLineEnd(buf, start + CHUNK_SIZE, limit);
+            chunks.add(new Chunk(buf, start, end));
+            start = end;
+        }
+        if (chunks.size() == 1) {
+            chunks.get(0).call();
+        } else if (!chunks.isEmpty()) {
+            try {
+                for (Future<Chunk> f : ForkJoinPool.commonPool().invokeAll(chunks)) f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+        // 按原顺序合并结果，并换算成全局行号报告错误
+        for (Chunk chunk : chunks) {
+            track.addAll(chunk.track);
+            if (errors != null) {
+                for (int i = 0; i < chunk.errorLines.size(); i++) {
+                    errors.onError(lineOffset + chunk.errorLines.get(i), chunk.errorCauses.get(i));
+                }
+            }
+            lineOffset += chunk.lines;
+        }
+        return lineOffset;
+    }
+
+    private static int nextLineEnd(byte[] buf, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buf[i] == '\n') return i + 1;
+        }
+        return limit;
+    }
+
+    // 原有的逐行解析，作为快速解析器不接受时的后备
+    private static void parseLine(String line, MacroTrack track) {
+        String[] arr = line.split(",");
+        if (arr.length >= 5 && arr.length <= 8) {
+            int x = Integer.parseInt(arr[0]);
+            int y = Integer.parseInt(arr[1]);
+            int type = Integer.parseInt(arr[2]);
+            int button = Integer.parseInt(arr[3]);
+            long delay = Long.parseLong(arr[4]);
+            int wheelAmount = arr.length > 5 ? Integer.parseInt(arr[5]) : 0;
+            int keyCode = arr.length > 6 ? Integer.parseInt(arr[6]) : 0;
+            int awtKeyCode = arr.length > 7 ? Integer.parseInt(arr[7]) : 0;
+            track.add(x, y, type, button, delay, wheelAmount, keyCode, awtKeyCode);
+        }
+    }
+
+    private static final class Chunk implements Callable<Chunk> {
+        private final byte[] buf;
+        private final int start;
+        private final int end;
+        private final MacroTrack track;
+        private final long[] fields = new long[8];
+        private final List<Integer> errorLines = new ArrayList<>();
+        private final List<Exception> errorCauses = new ArrayList<>();
+        private int lines = 0;
+
+        Chunk(byte[] buf, int start, int end) {
+            this.buf = buf;
+            this.start = start;
+            this.end = end;
+            // 每行至少约10字节
+            this.track = new MacroTrack((end - start) / 16);
+        }
+
+        @Override
+        public Chunk call() {
+            int pos = start;
+            while (pos < end) {
+                int lineEnd = pos;
+                while (lineEnd < end && buf[lineEnd] != '\n' && buf[lineEnd] != '\r') lineEnd++;
+                lines++;
+                parse(pos, lineEnd);
+                // 与BufferedReader.readLine一致：\n、\r和\r\n都视为行结束
+                pos = lineEnd;
+                if (pos < end && buf[pos++] == '\r' && pos < end && buf[pos] == '\n') pos++;
+            }
+            return this;
+        }
+
+        private void parse(int from, int to) {
+            int count = parseFields(from, to);
+            if (count >= 5 && count <= 8) {
+                track.add((int) fields[0], (int) fields[1], (int) fields[2], (int) fields[3], fields[4],
+                        count > 5 ? (int) fields[5] : 0, count > 6 ? (int) fields[6] : 0, count > 7 ? (int) fields[7] : 0);
+            } else if (count < 0) {
+                try {
+                    parseLine(new String(buf, from, to - from, StandardCharsets.UTF_8), track);
+                } catch (Exception ex) {
+                    errorLines.add(lines);
+                    errorCauses.add(ex);
+                }
+            }
+            // 其余列数（含空行）与原实现一样直接跳过
+        }
+
+        /**
+         * @return the number of fields, or -1 if the line needs the original parser
+         *         (empty field, non-digit, out of range, or more than 8 fields).
+         */
+        private int parseFields(int from, int to) {
+            if (from == to) return 0;
+            int count = 0;
+            int pos = from;
+            while (true) {
+                if (count == fields.length) return -1;
+                boolean negative = false;
+                if (pos < to && (buf[pos] == '-' || buf[pos] == '+')) {
+                    negative = buf[pos] == '-';
+                    pos++;
+                }
+                int digitsStart = pos;
+                long value = 0;
+                while (pos < to && buf[pos] != ',') {
+                    int d = buf[pos] - '0';
+                    if (d < 0 || d > 9 || pos - digitsStart >= 18) return -1;
+                    value = value * 10 + d;
+                    pos++;
+                }
+                if (pos == digitsStart) return -1;
+                if (negative) value = -value;
+                // 第5列为long，其余为int
+                if (count != 4 && (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)) return -1;
+                fields[count++] = value;
+                if (pos == to) return count;
+                pos++;
+            }
+        }
+    }
+}
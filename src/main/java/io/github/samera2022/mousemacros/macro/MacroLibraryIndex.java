@@ -0,0 +1,449 @@
+package io.github.samera2022.mousemacros.macro;
+
+import io.github.samera2022.mousemacros.action.ActionCursor;
+import io.github.samera2022.mousemacros.config.ConfigManager;
+import io.github.samera2022.mousemacros.config.ConfigSnapshot;
+import io.github.samera2022.mousemacros.ui.frame.settings.SettingsRegistry;
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Persistent metadata index of the .mmc files under "default_mmc_storage_path", kept in
+ * CONFIG_DIR/library.idx so the library can be browsed and searched without opening each file.
+ * <p>
+ * {@link #start()} loads the index, re-reads only files whose size or modification time changed
+ * and then follows the directory tree with a {@link WatchService}, re-indexing changed files in
+ * batches. Queries run against the in-memory entries and never touch the macro files.
+ * <p>
+ * Every indexing run fills its own entry map, and queries only see the map of the run that currently
+ * owns the index, so a run that is still winding down after a directory switch cannot leak entries
+ * of the old directory into the new one.
+ */
+public class MacroLibraryIndex {
+    public static final File INDEX_FILE = new File(ConfigManager.CONFIG_DIR, "library.idx");
+    private static final int MAGIC = 0x4D4D4C49; // "MMLI"
+    private static final int VERSION = 1;
+    // 目录内连续变化平静下来后再处理，避免文件写入中途被反复索引
+    private static final long SETTLE_MILLIS = 500;
+
+    // 当前拥有索引的运行，查询只读取它的条目
+    private static volatile Library current;
+    private static volatile Thread thread;
+    // 检查所有权与替换索引文件在同一把锁内完成；不用类锁，stop()等待旧线程时它仍能结束保存
+    private static final Object saveLock = new Object();
+
+    private static final class Library {
+        final Path dir;
+        final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+        Library(Path dir) {
+            this.dir = dir;
+        }
+    }
+
+    /**
+     * Metadata of one macro file. Coordinates cover mouse actions only; key usage maps each
+     * key code to the number of times it is pressed.
+     */
+    public static final class Entry {
+        private final Path root;
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final long eventCount;
+        private final long duration;
+        private final int minX, minY, maxX, maxY;
+        private final int[] keyCodes;
+        private final int[] keyPresses;
+        private final byte[] hash;
+
+        private Entry(Path root, String path, long size, long lastModified, long eventCount, long duration,
+                      int minX, int minY, int maxX, int maxY, int[] keyCodes, int[] keyPresses, byte[] hash) {
+            this.root = root;
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.eventCount = eventCount;
+            this.duration = duration;
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.keyCodes = keyCodes;
+            this.keyPresses = keyPresses;
+            this.hash = hash;
+        }
+
+        /**
+         * @return the path relative to the storage directory, with '/' separators.
+         */
+        public String getPath() { return path; }
+
+        public File getFile() { return root.resolve(path).toFile(); }
+
+        public long getSize() { return size; }
+
+        public long getEventCount() { return eventCount; }
+
+        /**
+         * @return the sum of all delays in milliseconds.
+         */
+        public long getDuration() { return duration; }
+
+        /**
+         * @return false if the macro has no mouse actions, in which case the bounds are meaningless.
+         */
+        public boolean hasBounds() { return minX <= maxX; }
+
+        public int getMinX() { return minX; }
+
+        public int getMinY() { return minY; }
+
+        public int getMaxX() { return maxX; }
+
+        public int getMaxY() { return maxY; }
+
+        public int[] getKeyCodes() { return keyCodes.clone(); }
+
+        public int getKeyPresses(int keyCode) {
+            int i = Arrays.binarySearch(keyCodes, keyCode);
+            return i >= 0 ? keyPresses[i] : 0;
+        }
+
+        public boolean usesKey(int keyCode) {
+            return Arrays.binarySearch(keyCodes, keyCode) >= 0;
+        }
+
+        /**
+         * @return the SHA-256 of the macro content as lowercase hex; equal hashes mean identical macros,
+         *         whether stored as plain files or as chunk manifests.
+         */
+        public String getHash() {
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Indexes the configured storage directory in the background and keeps following it.
+     * Calling it again after the setting changed switches to the new directory.
+     */
+    public static synchronized void start() {
+        Path dir = configuredRoot();
+        if (thread != null) {
+            if (current != null && Objects.equals(dir, current.dir)) return;
+            stop();
+        }
+        current = null;
+        if (dir == null) return;
+        Library library = new Library(dir);
+        current = library;
+        Thread t = new Thread(() -> run(library), "macro-library-index");
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+    }
+
+    public static synchronized void stop() {
+        Thread t = thread;
+        if (t == null) return;
+        // 先撤销所有权，未能及时退出的旧运行继续写入自己的条目，不再影响查询和索引文件
+        current = null;
+        t.interrupt();
+        try {
+            t.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    private static Path configuredRoot() {
+        ConfigSnapshot config = ConfigManager.snapshot();
+        if (!config.getBoolean(SettingsRegistry.ENABLE_DEFAULT_STORAGE)) return null;
+        String path = config.getString(SettingsRegistry.DEFAULT_MMC_STORAGE_PATH);
+        if (path == null || path.isEmpty()) return null;
+        File dir = new File(path);
+        return dir.isDirectory() ? dir.toPath().toAbsolutePath().normalize() : null;
+    }
+
+    /**
+     * @return the entry of the file, or null if it is outside the storage directory or not indexed yet.
+     */
+    public static Entry get(File file) {
+        Library library = current;
+        if (library == null) return null;
+        Path p = file.toPath().toAbsolutePath().normalize();
+        return p.startsWith(library.dir) ? library.entries.get(key(library.dir, p)) : null;
+    }
+
+    /**
+     * @return the entries with exactly this content, sorted by path.
+     */
+    public static List<Entry> findByHash(String hash) {
+        List<Entry> result = new ArrayList<>();
+        Library library = current;
+        if (library == null) return result;
+        for (Entry e : library.entries.values()) if (e.getHash().equalsIgnoreCase(hash)) result.add(e);
+        result.sort(Comparator.comparing(Entry::getPath));
+        return result;
+    }
+
+    public static int size() {
+        Library library = current;
+        return library == null ? 0 : library.entries.size();
+    }
+
+    private static void run(Library library) {
+        Path dir = library.dir;
+        boolean changed = load(library);
+        try (WatchService watcher = dir.getFileSystem().newWatchService()) {
+            // 先注册监听再扫描，扫描期间发生的变化也不会漏掉
+            Map<WatchKey, Path> keys = new HashMap<>();
+            register(watcher, keys, dir, dir);
+            changed |= reconcile(library);
+            if (changed) save(library);
+            Set<Path> pending = new HashSet<>();
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = pending.isEmpty() ? watcher.take() : watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    boolean dirty = false;
+                    for (Path p : pending) dirty |= update(library, p);
+                    pending.clear();
+                    if (dirty) save(library);
+                    continue;
+                }
+                Path base = keys.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        // 事件丢失时整体对账一次
+                        if (reconcile(library)) save(library);
+                        continue;
+                    }
+                    Path p = base.resolve((Path) event.context());
+                    if (event.kind() == ENTRY_CREATE && Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                        register(watcher, keys, dir, p);
+                        try (Stream<Path> files = Files.walk(p)) {
+                            files.filter(MacroLibraryIndex::isMacroFile).forEach(pending::add);
+                        }
+                    } else {
+                        pending.add(p);
+                    }
+                }
+                if (!key.reset()) {
+                    keys.remove(key);
+                    // 子目录被删除或移走
+                    String prefix = key(dir, base) + "/";
+                    library.entries.keySet().removeIf(k -> k.startsWith(prefix));
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 停止
+        } catch (IOException e) {
+            System.err.println("Failed to watch macro library: " + e.getMessage());
+        } finally {
+            // 异常退出后允许start()对同一目录重新开始；stop()会等待本线程结束，这里不能取类锁
+            if (thread == Thread.currentThread()) thread = null;
+        }
+    }
+
+    private static void register(WatchService watcher, Map<WatchKey, Path> keys, Path root, Path dir) throws IOException {
+        try (Stream<Path> dirs = Files.walk(dir)) {
+            // 分块存储的目录不含宏文件，不必监听
+            for (Path d : (Iterable<Path>) dirs.filter(d -> Files.isDirectory(d) && !isChunkDir(root, d))::iterator) {
+                keys.put(d.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), d);
+            }
+        }
+    }
+
+    // 与磁盘对账：删除已不存在的条目，只重新读取大小或修改时间变化的文件
+    private static boolean reconcile(Library library) throws IOException {
+        Path dir = library.dir;
+        boolean changed = false;
+        Set<String> seen = new HashSet<>();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.filter(MacroLibraryIndex::isMacroFile)::iterator) {
+                if (Thread.currentThread().isInterrupted()) return changed;
+                seen.add(key(dir, p));
+                changed |= update(library, p);
+            }
+        }
+        changed |= library.entries.keySet().retainAll(seen);
+        return changed;
+    }
+
+    // 只检查存储目录以下的部分，存储目录本身位于名为.chunks的目录中时不受影响
+    private static boolean isChunkDir(Path root, Path d) {
+        for (Path name : root.relativize(d)) {
+            if (name.toString().equals(ChunkStore.DIR_NAME)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isMacroFile(Path p) {
+        return p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".mmc") && Files.isRegularFile(p);
+    }
+
+    private static boolean update(Library library, Path p) {
+        String key = key(library.dir, p);
+        if (!isMacroFile(p)) {
+            return library.entries.remove(key) != null;
+        }
+        File file = p.toFile();
+        Entry old = library.entries.get(key);
+        if (old != null && old.size == file.length() && old.lastModified == file.lastModified()) return false;
+        try {
+            library.entries.put(key, scan(library.dir, key, file));
+        } catch (Exception e) {
+            // 无法解析的文件不进入索引
+            System.err.println("Failed to index " + file + ": " + e.getMessage());
+            library.entries.remove(key);
+        }
+        return true;
+    }
+
+    private static Entry scan(Path dir, String key, File file) throws IOException {
+        long size = file.length();
+        long lastModified = file.lastModified();
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        Stats stats = new Stats();
+        // 一次读取同时计算哈希与统计信息
+        // 分块存储的宏按重组后的内容计算哈希，与普通文件可比
+        try (InputStream in = new BufferedInputStream(new DigestInputStream(MmcFormat.openStream(file), digest), MmcFormat.BUFFER_SIZE)) {
+            if (MmcFormat.isBinary(in)) {
+                MmcReader r = new MmcReader(in);
+                while (r.next()) stats.add(r.x(), r.y(), r.type(), r.delay(), r.keyCode());
+            } else {
+                ActionCursor c = LegacyCsvImporter.read(in, null).cursor();
+                while (c.next()) stats.add(c.x(), c.y(), c.type(), c.delay(), c.keyCode());
+            }
+            // 结尾之后若还有数据也要计入哈希
+            byte[] rest = new byte[MmcFormat.BUFFER_SIZE];
+            while (in.read(rest) >= 0) ;
+        }
+        int[] codes = new int[stats.keys.size()];
+        int[] presses = new int[stats.keys.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> e : stats.keys.entrySet()) {
+            codes[i] = e.getKey();
+            presses[i++] = e.getValue();
+        }
+        return new Entry(dir, key, size, lastModified, stats.count, stats.duration, stats.minX, stats.minY, stats.maxX, stats.maxY,
+                codes, presses, digest.digest());
+    }
+
+    private static final class Stats {
+        long count = 0, duration = 0;
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        final Map<Integer, Integer> keys = new TreeMap<>();
+
+        void add(int x, int y, int type, long delay, int keyCode) {
+            count++;
+            duration += delay;
+            if (type >= 0 && type <= 3) {
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+            } else if (type == 10) {
+                keys.merge(keyCode, 1, Integer::sum);
+            }
+        }
+    }
+
+    private static String key(Path dir, Path p) {
+        return dir.relativize(p.toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+    }
+
+    // 索引属于其他目录或已损坏时视为空索引，返回true表示需要重写
+    private static boolean load(Library library) {
+        Path dir = library.dir;
+        if (!INDEX_FILE.isFile()) return true;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(INDEX_FILE), MmcFormat.BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION || !in.readUTF().equals(dir.toString())) return true;
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String path = in.readUTF();
+                long size = in.readLong(), lastModified = in.readLong(), count = in.readLong(), duration = in.readLong();
+                int minX = in.readInt(), minY = in.readInt(), maxX = in.readInt(), maxY = in.readInt();
+                int k = in.readInt();
+                int[] codes = new int[k], presses = new int[k];
+                for (int j = 0; j < k; j++) {
+                    codes[j] = in.readInt();
+                    presses[j] = in.readInt();
+                }
+                byte[] hash = new byte[in.readUnsignedByte()];
+                in.readFully(hash);
+                library.entries.put(path, new Entry(dir, path, size, lastModified, count, duration, minX, minY, maxX, maxY, codes, presses, hash));
+            }
+            return false;
+        } catch (IOException e) {
+            library.entries.clear();
+            return true;
+        }
+    }
+
+    private static void save(Library library) {
+        Path dir = library.dir;
+        File temp = null;
+        try {
+            File parent = INDEX_FILE.getParentFile();
+            if (!parent.exists()) parent.mkdirs();
+            temp = Files.createTempFile(parent.toPath(), INDEX_FILE.getName(), ".tmp").toFile();
+            List<Entry> snapshot = new ArrayList<>(library.entries.values());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), MmcFormat.BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeUTF(dir.toString());
+                out.writeInt(snapshot.size());
+                for (Entry e : snapshot) {
+                    out.writeUTF(e.path);
+                    out.writeLong(e.size);
+                    out.writeLong(e.lastModified);
+                    out.writeLong(e.eventCount);
+                    out.writeLong(e.duration);
+                    out.writeInt(e.minX);
+                    out.writeInt(e.minY);
+                    out.writeInt(e.maxX);
+                    out.writeInt(e.maxY);
+                    out.writeInt(e.keyCodes.length);
+                    for (int j = 0; j < e.keyCodes.length; j++) {
+                        out.writeInt(e.keyCodes[j]);
+                        out.writeInt(e.keyPresses[j]);
+                    }
+                    out.writeByte(e.hash.length);
+                    out.write(e.hash);
+                }
+            }
+            // 只有仍拥有索引的运行才能替换索引文件
+            synchronized (saveLock) {
+                if (current != library) return;
+                try {
+                    Files.move(temp.toPath(), INDEX_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp.toPath(), INDEX_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to save macro library index: " + e.getMessage());
+        } finally {
+            if (temp != null) temp.delete();
+        }
+    }
+}
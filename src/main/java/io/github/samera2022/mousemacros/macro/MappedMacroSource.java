@@ -0,0 +1,166 @@
+package io.github.samera2022.mousemacros.macro;
+
+import io.github.samera2022.mousemacros.action.ActionCursor;
+import io.github.samera2022.mousemacros.action.MacroSource;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import static io.github.samera2022.mousemacros.macro.MmcFormat.*;
+
+/**
+ * Plays a binary .mmc v2 file directly from memory-mapped regions. Mapping only reserves
+ * address space, so opening is instant regardless of file size and actions are decoded in
+ * place as playback advances; the OS pages the file in and out as needed.
+ * <p>
+ * The mapping keeps the file locked on Windows until it is {@link #close() closed}; no cursor may be
+ * used after that.
+ */
+public class MappedMacroSource implements MacroSource, Closeable {
+    // 单个映射区域的上限，超过2GB的文件按区域拆分
+    private static final long REGION_SIZE = 1L << 30;
+
+    private final File file;
+    private final MappedByteBuffer[] regions;
+    private volatile boolean closed;
+    private final long actionCount;
+    private final boolean empty;
+
+    public MappedMacroSource(File file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_LENGTH) throw new IOException("Not a binary macro file");
+            int n = (int) ((length + REGION_SIZE - 1) / REGION_SIZE);
+            regions = new MappedByteBuffer[n];
+            for (int i = 0; i < n; i++) {
+                long offset = i * REGION_SIZE;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(REGION_SIZE, length - offset));
+            }
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (byteAt(i) != MAGIC[i]) throw new IOException("Not a binary macro file");
+            }
+            if (byteAt(MAGIC.length) != VERSION) throw new IOException("Unsupported macro file version: " + byteAt(MAGIC.length));
+            actionCount = readTrailerCount(length);
+        }
+        Cursor probe = new Cursor();
+        empty = !probe.next();
+    }
+
+    // 文件完整写入时，末尾是结束标记加8字节的事件数
+    private long readTrailerCount(long length) {
+        if (length < HEADER_LENGTH + TRAILER_LENGTH) return -1;
+        long markerPos = length - TRAILER_LENGTH;
+        if ((byteAt(markerPos) & 0xFF) != OP_END) return -1;
+        long count = 0;
+        for (int i = 1; i <= Long.BYTES; i++) {
+            count = (count << 8) | (byteAt(markerPos + i) & 0xFF);
+        }
+        return count;
+    }
+
+    private byte byteAt(long pos) {
+        return regions[(int) (pos / REGION_SIZE)].get((int) (pos % REGION_SIZE));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return true if the file has no trailer, i.e. it ends early and playback stops at the last complete record.
+     */
+    public boolean isTruncated() {
+        return actionCount < 0;
+    }
+
+    @Override
+    public Cursor cursor() {
+        if (closed) throw new IllegalStateException("Macro file mapping is closed: " + file);
+        return new Cursor();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    @Override
+    public long getActionCount() {
+        return actionCount;
+    }
+
+    /**
+     * Unmaps the file right away instead of waiting for the buffers to be garbage collected, so the file
+     * can be replaced or deleted afterwards. Falls back to dropping the buffers when the JVM offers no way to unmap.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        for (int i = 0; i < regions.length; i++) {
+            unmap(regions[i]);
+            regions[i] = null;
+        }
+    }
+
+    // JDK没有公开的解除映射接口，通过jdk.unsupported中的Unsafe.invokeCleaner立即释放
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(field.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // 无法解除映射时由GC回收
+        }
+    }
+
+    /**
+     * Independent decoding position over the shared mapping.
+     */
+    public class Cursor extends MmcDecoder implements ActionCursor {
+        private int regionIndex;
+        private ByteBuffer region;
+
+        Cursor() {
+            seekToFirstRecord();
+        }
+
+        private void seekToFirstRecord() {
+            regionIndex = 0;
+            region = regions[0].duplicate();
+            region.position(HEADER_LENGTH);
+        }
+
+        @Override
+        protected int readByte() {
+            while (!region.hasRemaining()) {
+                if (regionIndex + 1 >= regions.length) return -1;
+                region = regions[++regionIndex].duplicate();
+            }
+            return region.get() & 0xFF;
+        }
+
+        @Override
+        public void rewind() {
+            resetState();
+            seekToFirstRecord();
+        }
+
+        /**
+         * @return the byte offset of the next record in the file.
+         */
+        public long getOffset() {
+            return regionIndex * REGION_SIZE + region.position();
+        }
+    }
+}
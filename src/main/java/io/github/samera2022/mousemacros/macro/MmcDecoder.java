@@ -0,0 +1,201 @@
+package io.github.samera2022.mousemacros.macro;
+
+import io.github.samera2022.mousemacros.action.MacroTrack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static io.github.samera2022.mousemacros.macro.MmcFormat.*;
+
+/**
+ * Record decoder for the binary .mmc v2 format, independent of where the bytes come from.
+ * A file that ends without a trailer (e.g. an interrupted write) is read up to the
+ * last complete record and reported by {@link #isTruncated()}.
+ * <p>
+ * Decoding is forward-only: {@link #next()} and the accessors have the same meaning as in
+ * {@link io.github.samera2022.mousemacros.action.ActionCursor}, but only subclasses that can seek back
+ * to the first record, such as {@link MappedMacroSource.Cursor}, implement that interface.
+ */
+public abstract class MmcDecoder {
+    private int x;
+    private int y;
+    private int type;
+    private int button;
+    private long delay;
+    private int wheelAmount;
+    private int keyCode;
+    private int awtKeyCode;
+
+    private int lastX = 0;
+    private int lastY = 0;
+    private long count = 0;
+    private long declaredCount = -1;
+    private boolean ended = false;
+    private boolean truncated = false;
+
+    /**
+     * @return the next byte (0..255), or -1 at the end of the data.
+     */
+    protected abstract int readByte() throws IOException;
+
+    /**
+     * Validates the header at the current position.
+     */
+    protected void readHeader() throws IOException {
+        for (byte b : MAGIC) {
+            if (readByte() != (b & 0xFF)) throw new IOException("Not a binary macro file");
+        }
+        int version = readByte();
+        if (version != VERSION) throw new IOException("Unsupported macro file version: " + version);
+        readByte(); // flags
+    }
+
+    /**
+     * Restarts decoding state; subclasses reposition the data right after the header.
+     */
+    protected void resetState() {
+        lastX = 0;
+        lastY = 0;
+        count = 0;
+        ended = false;
+        truncated = false;
+    }
+
+    public boolean next() {
+        if (ended) return false;
+        try {
+            int op = readByte();
+            if (op < 0) return end(true);
+            if (op == OP_END) {
+                long declared = 0;
+                for (int i = 0; i < Long.BYTES; i++) {
+                    declared = (declared << 8) | readRequiredByte();
+                }
+                declaredCount = declared;
+                return end(false);
+            }
+            long d = unzigzag(readVarLong());
+            switch (op) {
+                case OP_MOVE:
+                case OP_PRESS:
+                case OP_RELEASE:
+                case OP_WHEEL:
+                    x = lastX += unzigzag(readVarInt());
+                    y = lastY += unzigzag(readVarInt());
+                    button = op == OP_PRESS || op == OP_RELEASE ? unzigzag(readVarInt()) : 0;
+                    wheelAmount = op == OP_WHEEL ? unzigzag(readVarInt()) : 0;
+                    keyCode = 0;
+                    awtKeyCode = 0;
+                    break;
+                case OP_KEY_PRESS:
+                case OP_KEY_RELEASE:
+                    x = 0;
+                    y = 0;
+                    button = 0;
+                    wheelAmount = 0;
+                    keyCode = readVarInt();
+                    awtKeyCode = readVarInt();
+                    break;
+                case OP_RAW:
+                    op = unzigzag(readVarInt());
+                    x = unzigzag(readVarInt());
+                    y = unzigzag(readVarInt());
+                    button = unzigzag(readVarInt());
+                    wheelAmount = unzigzag(readVarInt());
+                    keyCode = unzigzag(readVarInt());
+                    awtKeyCode = unzigzag(readVarInt());
+                    break;
+                default:
+                    throw new IOException("Corrupt macro file: unknown opcode " + op + " at event " + count);
+            }
+            type = op;
+            delay = d;
+            count++;
+            return true;
+        } catch (TruncatedRecordException e) {
+            return end(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean end(boolean truncated) {
+        ended = true;
+        this.truncated = truncated;
+        return false;
+    }
+
+    private int readRequiredByte() throws IOException {
+        int b = readByte();
+        if (b < 0) throw new TruncatedRecordException();
+        return b;
+    }
+
+    private int readVarInt() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readRequiredByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Corrupt macro file: varint too long");
+    }
+
+    private long readVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readRequiredByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Corrupt macro file: varint too long");
+    }
+
+    /**
+     * Appends every remaining action to the track.
+     */
+    public void readInto(MacroTrack track) {
+        while (next()) {
+            track.add(x, y, type, button, delay, wheelAmount, keyCode, awtKeyCode);
+        }
+    }
+
+    /**
+     * @return the number of actions decoded so far.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the count stored in the trailer, or -1 if the trailer has not been reached.
+     */
+    public long getDeclaredCount() {
+        return declaredCount;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public int x() { return x; }
+    public int y() { return y; }
+    public int type() { return type; }
+    public int button() { return button; }
+    public long delay() { return delay; }
+    public int wheelAmount() { return wheelAmount; }
+    public int keyCode() { return keyCode; }
+    public int awtKeyCode() { return awtKeyCode; }
+
+    // 记录在中途被截断（例如写入过程中断电）
+    private static class TruncatedRecordException extends IOException {
+        TruncatedRecordException() {
+            super(null, null);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.samera2022.mousemacros.macro;
+
+import io.github.samera2022.mousemacros.action.ActionCursor;
+import io.github.samera2022.mousemacros.action.MacroSource;
+import io.github.samera2022.mousemacros.action.MacroTrack;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Layout of the binary .mmc v2 format and the entry points for reading/writing macro files.
+ * <pre>
+ * header : 'M' 'M' 'C' 0x00, version (1 byte), flags (1 byte, reserved)
+ * record : opcode (1 byte) followed by varints; x/y are zigzag deltas to the previous mouse position
+ *          0..3   move/press/release/wheel : delay, dx, dy [, button | wheel]
+ *          10, 11 key press/release          : delay, keyCode, awtKeyCode
+ *          0xFE   any other combination      : delay, type, x, y, button, wheel, keyCode, awtKeyCode
+ * trailer: 0xFF, event count (8 bytes, big-endian), so the count can be read from the end of the file
+ * </pre>
+ * Files that do not start with the magic are read by {@link LegacyCsvImporter}; {@link ChunkStore}
+ * manifests are reassembled transparently. A binary file without trailer fails with
+ * {@link TruncatedException}; only journal recovery reads such files leniently.
+ */
+public class MmcFormat {
+    static final byte[] MAGIC = {'M', 'M', 'C', 0};
+    static final int VERSION = 2;
+    static final int HEADER_LENGTH = MAGIC.length + 2;
+
+    static final int OP_MOVE = 0;
+    static final int OP_PRESS = 1;
+    static final int OP_RELEASE = 2;
+    static final int OP_WHEEL = 3;
+    static final int OP_KEY_PRESS = 10;
+    static final int OP_KEY_RELEASE = 11;
+    static final int OP_RAW = 0xFE;
+    static final int OP_END = 0xFF;
+
+    static final int TRAILER_LENGTH = 1 + Long.BYTES;
+    static final int BUFFER_SIZE = 1 << 16;
+
+    // 超过该大小的二进制文件直接内存映射回放，不再整体加载到堆上
+    public static final long MAPPED_THRESHOLD = 64L << 20;
+
+    /**
+     * Checks the magic without consuming it; the stream must support mark/reset.
+     */
+    public static boolean isBinary(InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        byte[] head = new byte[MAGIC.length];
+        int n = in.readNBytes(head, 0, head.length);
+        in.reset();
+        return n == MAGIC.length && Arrays.equals(head, MAGIC);
+    }
+
+    public static boolean isBinary(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), MAGIC.length)) {
+            return isBinary(in);
+        }
+    }
+
+    /**
+     * Thrown when a binary macro ends before its trailer, e.g. after an incomplete copy or an interrupted save.
+     * The actions up to the last complete record are available from {@link #getPartial()}.
+     */
+    public static class TruncatedException extends IOException {
+        private final MacroTrack partial;
+
+        TruncatedException(MacroTrack partial) {
+            super("The macro file ends early after " + partial.size() + " actions");
+            this.partial = partial;
+        }
+
+        public MacroTrack getPartial() {
+            return partial;
+        }
+    }
+
+    /**
+     * Reads a macro file of either format into a new track.
+     * @param errors receives unparsable lines of legacy files; binary files fail as a whole.
+     */
+    public static MacroTrack read(File file, LegacyCsvImporter.LineErrorHandler errors) throws IOException {
+        try (InputStream in = openStream(file)) {
+            return readOpened(in, errors);
+        }
+    }
+
+    /**
+     * Reads a macro of either format from the stream, which is buffered here and left open.
+     */
+    public static MacroTrack read(InputStream stream, LegacyCsvImporter.LineErrorHandler errors) throws IOException {
+        return readOpened(openStream(stream), errors);
+    }
+
+    private static MacroTrack readOpened(InputStream in, LegacyCsvImporter.LineErrorHandler errors) throws IOException {
+        if (isBinary(in)) {
+            MacroTrack track = new MacroTrack();
+            MmcReader reader = new MmcReader(in);
+            reader.readInto(track);
+            if (reader.isTruncated()) throw new TruncatedException(track);
+            return track;
+        }
+        return LegacyCsvImporter.read(in, errors);
+    }
+
+    /**
+     * Buffers the stream; if it holds a {@link ChunkStore} manifest, returns the reassembled macro instead.
+     * The result supports mark/reset, so {@link #isBinary(InputStream)} can be used on it.
+     */
+    public static InputStream openStream(InputStream stream) throws IOException {
+        return openStream(stream, null);
+    }
+
+    /**
+     * Like {@link #openStream(InputStream)}, but a manifest looks for its chunks next to the file first.
+     */
+    public static InputStream openStream(File file) throws IOException {
+        return openStream(new FileInputStream(file), file);
+    }
+
+    private static InputStream openStream(InputStream stream, File location) throws IOException {
+        InputStream in = new BufferedInputStream(stream, BUFFER_SIZE);
+        if (ChunkStore.isManifest(in)) {
+            InputStream chunks;
+            try {
+                chunks = ChunkStore.Manifest.read(in).open(location);
+            } finally {
+                in.close();
+            }
+            return new BufferedInputStream(chunks, BUFFER_SIZE);
+        }
+        return in;
+    }
+
+    /**
+     * Opens a macro file for playback: large binary files are memory-mapped, everything else is read into a track.
+     */
+    public static MacroSource open(File file, LegacyCsvImporter.LineErrorHandler errors) throws IOException {
+        if (file.length() >= MAPPED_THRESHOLD && isBinary(file)) {
+            return new MappedMacroSource(file);
+        }
+        return read(file, errors);
+    }
+
+    public static void write(File file, ActionCursor actions) throws IOException {
+        try (MmcWriter writer = new MmcWriter(new FileOutputStream(file))) {
+            writer.writeAll(actions);
+        }
+    }
+
+    static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
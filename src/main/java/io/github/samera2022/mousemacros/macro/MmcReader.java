@@ -0,0 +1,49 @@
+package io.github.samera2022.mousemacros.macro;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming reader for binary .mmc v2 files with its own read buffer. The stream can only be read
+ * once, so use {@link #readInto} or iterate with {@link #next()}.
+ */
+public class MmcReader extends MmcDecoder implements Closeable {
+    private final InputStream in;
+    private final byte[] buf = new byte[MmcFormat.BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+    private long bytesRead = 0;
+
+    /**
+     * Reads and validates the header immediately.
+     */
+    public MmcReader(InputStream in) throws IOException {
+        this.in = in;
+        readHeader();
+    }
+
+    @Override
+    protected int readByte() throws IOException {
+        if (pos == limit) {
+            int n = in.read(buf, 0, buf.length);
+            if (n <= 0) return -1;
+            bytesRead += n;
+            pos = 0;
+            limit = n;
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+    /**
+     * @return the number of bytes consumed from the underlying stream, including the header.
+     */
+    public long getBytesRead() {
+        return bytesRead - (limit - pos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.samera2022.mousemacros.macro;
+
+import io.github.samera2022.mousemacros.action.ActionCursor;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static io.github.samera2022.mousemacros.macro.MmcFormat.*;
+
+/**
+ * Streaming encoder for the binary .mmc v2 format, see {@link MmcFormat}.
+ */
+public class MmcWriter implements Closeable, Flushable {
+    // 单条记录最长：操作码 + 1个varlong + 7个varint
+    private static final int MAX_RECORD_BYTES = 1 + 10 + 7 * 5;
+
+    private final OutputStream out;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos = 0;
+    private int lastX = 0;
+    private int lastY = 0;
+    private long count = 0;
+    private boolean closed = false;
+
+    public MmcWriter(OutputStream out) throws IOException {
+        this.out = out;
+        System.arraycopy(MAGIC, 0, buf, 0, MAGIC.length);
+        buf[MAGIC.length] = (byte) VERSION;
+        buf[MAGIC.length + 1] = 0;
+        pos = HEADER_LENGTH;
+    }
+
+    public void write(int x, int y, int type, int button, long delay, int wheelAmount, int keyCode, int awtKeyCode) throws IOException {
+        if (pos + MAX_RECORD_BYTES > buf.length) flushBuffer();
+        boolean mouse = type >= OP_MOVE && type <= OP_WHEEL && keyCode == 0 && awtKeyCode == 0
+                && (type == OP_PRESS || type == OP_RELEASE || button == 0)
+                && (type == OP_WHEEL || wheelAmount == 0);
+        boolean key = (type == OP_KEY_PRESS || type == OP_KEY_RELEASE) && x == 0 && y == 0 && button == 0
+                && wheelAmount == 0 && keyCode >= 0 && awtKeyCode >= 0;
+        if (mouse) {
+            buf[pos++] = (byte) type;
+            putVarLong(zigzag(delay));
+            putVarInt(zigzag(x - lastX));
+            putVarInt(zigzag(y - lastY));
+            if (type == OP_PRESS || type == OP_RELEASE) putVarInt(zigzag(button));
+            else if (type == OP_WHEEL) putVarInt(zigzag(wheelAmount));
+            lastX = x;
+            lastY = y;
+        } else if (key) {
+            buf[pos++] = (byte) type;
+            putVarLong(zigzag(delay));
+            putVarInt(keyCode);
+            putVarInt(awtKeyCode);
+        } else {
+            buf[pos++] = (byte) OP_RAW;
+            putVarLong(zigzag(delay));
+            putVarInt(zigzag(type));
+            putVarInt(zigzag(x));
+            putVarInt(zigzag(y));
+            putVarInt(zigzag(button));
+            putVarInt(zigzag(wheelAmount));
+            putVarInt(zigzag(keyCode));
+            putVarInt(zigzag(awtKeyCode));
+        }
+        count++;
+    }
+
+    public void writeAll(ActionCursor c) throws IOException {
+        while (c.next()) {
+            write(c.x(), c.y(), c.type(), c.button(), c.delay(), c.wheelAmount(), c.keyCode(), c.awtKeyCode());
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    private void putVarInt(int v) {
+        while ((v & ~0x7F) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+    }
+
+    private void putVarLong(long v) {
+        while ((v & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+
+    /**
+     * Pushes the buffered records to the underlying stream without ending the file.
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Writes the trailer and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (pos + TRAILER_LENGTH > buf.length) flushBuffer();
+            buf[pos++] = (byte) OP_END;
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (count >>> shift);
+            }
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+}
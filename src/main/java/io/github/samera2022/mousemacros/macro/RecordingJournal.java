@@ -0,0 +1,177 @@
+package io.github.samera2022.mousemacros.macro;
+
+import io.github.samera2022.mousemacros.action.MacroTrack;
+import io.github.samera2022.mousemacros.config.ConfigManager;
+import io.github.samera2022.mousemacros.ui.frame.settings.SettingsRegistry;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-ahead journal of the recording in progress. Recorded actions are handed over in memory and a
+ * background thread appends them in batches to CONFIG_DIR/journal/recording.mmc as plain .mmc v2 records,
+ * syncing the file to disk according to the "journal_fsync_policy" setting.
+ * <p>
+ * Until {@link #finish()} writes the trailer the journal is a truncated v2 file, which the decoder reads
+ * up to the last complete record; a journal left without trailer therefore means the app did not
+ * stop recording cleanly and can be recovered with {@link #recover()}.
+ */
+public class RecordingJournal {
+    public static final File JOURNAL_FILE = new File(new File(ConfigManager.CONFIG_DIR, "journal"), "recording.mmc");
+    private static final long BATCH_INTERVAL_NANOS = 200_000_000L;
+    private static final long FSYNC_INTERVAL_NANOS = 1_000_000_000L;
+
+    /**
+     * Order matches the "journal_fsync_policy" combo box (index 1 = EVERY_BATCH).
+     */
+    public enum FsyncPolicy {
+        EVERY_BATCH, INTERVAL, NEVER;
+
+        public static FsyncPolicy fromConfig() {
+            int index = ConfigManager.snapshot().getInt(SettingsRegistry.JOURNAL_FSYNC_POLICY);
+            FsyncPolicy[] values = values();
+            return index >= 1 && index <= values.length ? values[index - 1] : INTERVAL;
+        }
+    }
+
+    private final FileOutputStream file;
+    private final MmcWriter writer;
+    private final FsyncPolicy policy;
+    private final Thread thread;
+    private final Object lock = new Object();
+    // 采集线程写入pending，日志线程交换后写盘
+    private MacroTrack pending = new MacroTrack();
+    private MacroTrack spare = new MacroTrack();
+    private volatile boolean stopping = false;
+    private volatile IOException failure;
+    private long lastSync;
+
+    private RecordingJournal(FsyncPolicy policy) throws IOException {
+        File dir = JOURNAL_FILE.getParentFile();
+        if (!dir.exists()) dir.mkdirs();
+        this.policy = policy;
+        file = new FileOutputStream(JOURNAL_FILE);
+        writer = new MmcWriter(file);
+        writer.flush();
+        lastSync = System.nanoTime();
+        thread = new Thread(this::run, "recording-journal");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Replaces any previous journal and starts the background writer.
+     */
+    public static RecordingJournal start(FsyncPolicy policy) throws IOException {
+        RecordingJournal journal = new RecordingJournal(policy);
+        journal.thread.start();
+        return journal;
+    }
+
+    public void append(int x, int y, int type, int button, long delay, int wheelAmount, int keyCode, int awtKeyCode) {
+        // 写盘失败后不再积压，录制仍保留在内存中
+        if (failure != null) return;
+        synchronized (lock) {
+            pending.add(x, y, type, button, delay, wheelAmount, keyCode, awtKeyCode);
+        }
+    }
+
+    /**
+     * Writes the remaining actions and the trailer, leaving a complete v2 file.
+     * @throws IOException if any write since {@link #start} failed; the journal is then incomplete.
+     */
+    public void finish() throws IOException {
+        stopping = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            closeQuietly();
+            throw failure;
+        }
+        writer.close();
+        // 关闭后再同步一次，确保结尾标记也已落盘
+        if (policy != FsyncPolicy.NEVER) {
+            try (FileChannel channel = FileChannel.open(JOURNAL_FILE.toPath(), StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            boolean last = stopping;
+            try {
+                writeBatch(last);
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+            if (last) return;
+            LockSupport.parkNanos(BATCH_INTERVAL_NANOS);
+        }
+    }
+
+    private void writeBatch(boolean last) throws IOException {
+        MacroTrack batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = spare;
+        }
+        if (!batch.isEmpty()) {
+            writer.writeAll(batch.cursor());
+            batch.clear();
+            writer.flush();
+        }
+        synchronized (lock) {
+            spare = batch;
+        }
+        long now = System.nanoTime();
+        if (policy == FsyncPolicy.EVERY_BATCH || last
+                || (policy == FsyncPolicy.INTERVAL && now - lastSync >= FSYNC_INTERVAL_NANOS)) {
+            if (policy != FsyncPolicy.NEVER) file.getFD().sync();
+            lastSync = now;
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            file.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Copies the finished journal to the target file, which is equivalent to serializing the recording again.
+     */
+    public static void copyTo(File target) throws IOException {
+        Files.copy(JOURNAL_FILE.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static void copyTo(OutputStream target) throws IOException {
+        Files.copy(JOURNAL_FILE.toPath(), target);
+    }
+
+    /**
+     * @return the actions of a journal that was left without trailer, or null if there is nothing to recover.
+     */
+    public static MacroTrack recover() throws IOException {
+        if (!JOURNAL_FILE.isFile() || JOURNAL_FILE.length() <= MmcFormat.HEADER_LENGTH) return null;
+        MacroTrack track = new MacroTrack();
+        try (MmcReader reader = new MmcReader(new BufferedInputStream(new FileInputStream(JOURNAL_FILE), MmcFormat.BUFFER_SIZE))) {
+            reader.readInto(track);
+            if (!reader.isTruncated() || track.isEmpty()) return null;
+        }
+        return track;
+    }
+
+    public static void delete() {
+        JOURNAL_FILE.delete();
+    }
+}
@@ -4,7 +4,6 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.github.samera2022.mousemacros.util.FileUtil;
 
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -31,20 +30,22 @@ public class CacheManager {
         cache = loadCache();
     }
 
+    /**
+     * Queues the cache to be written by {@link PersistenceService}; repeated calls in quick succession
+     * are coalesced into one write.
+     */
     public static void saveCache() {
         saveCache(cache);
     }
 
     private static void saveCache(Cache c) {
-        try {
-            Path cachePath = Paths.get(CACHE_PATH);
-            // 确保父目录存在
-            if (cachePath.getParent() != null) Files.createDirectories(cachePath.getParent());
-            String json = gson.toJson(c);
-            Files.write(cachePath, json.getBytes(StandardCharsets.UTF_8));
-        } catch (IOException e) {
-            System.err.println("Failed to save cache: " + e.getMessage());
-        }
+        // 只在调用线程上复制字段，序列化和写盘交给后台线程
+        Cache snapshot = new Cache();
+        snapshot.lastLoadDirectory = c.lastLoadDirectory;
+        snapshot.lastSaveDirectory = c.lastSaveDirectory;
+        snapshot.windowSizeMap = new java.util.HashMap<>(c.windowSizeMap);
+        snapshot.defaultCloseOperation = c.defaultCloseOperation;
+        PersistenceService.schedule(Paths.get(CACHE_PATH), () -> gson.toJson(snapshot));
     }
 
     private static Cache loadCache() {
@@ -1,12 +1,147 @@
 package io.github.samera2022.mousemacros.manager;
 
-import io.github.samera2022.mousemacros.ui.frame.MainFrame;
+import io.github.samera2022.mousemacros.LangKeys;
+import io.github.samera2022.mousemacros.util.ConsoleOutputCapturer;
 
 import javax.swing.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Asynchronous log pipeline: {@link #log(String)} only enqueues, and a daemon thread coalesces
+ * queued messages into one stdout write and at most {@link #FLUSHES_PER_SECOND} log area appends per second.
+ * When the queue is full new messages are dropped and replaced by a single summary line.
+ * {@link LogMessage}s are formatted by that thread as they are written; lines of captured input are kept
+ * out of the on-disk console log.
+ */
 public class LogManager {
+    public static final int FLUSHES_PER_SECOND = 10;
+    private static final long FLUSH_INTERVAL_NANOS = 1_000_000_000L / FLUSHES_PER_SECOND;
+    private static final int QUEUE_CAPACITY = 8192;
+
+    private static final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicLong dropped = new AtomicLong();
+    private static volatile JTextArea logArea;
+
+    // 尚未交给EDT的文本；EDT繁忙时后续批次合并到这里，保证同一时间最多一个待执行的append
+    private static final StringBuilder pendingUi = new StringBuilder();
+    private static boolean uiAppendScheduled = false;
+
+    static {
+        Thread flusher = new Thread(LogManager::runFlusher, "log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        // 退出前把队列中剩余的日志写到控制台
+        Runtime.getRuntime().addShutdownHook(new Thread(LogManager::flush, "log-shutdown-flush"));
+    }
+
     public static void log(String msg) {
-        SwingUtilities.invokeLater(() -> MainFrame.logArea.append(msg + "\n"));
-        System.out.println(msg);
+        if (!queue.offer(msg)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public static void log(LogMessage msg) {
+        if (!queue.offer(msg)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Sets the text area that receives log batches; text logged before this call is appended once it is attached.
+     */
+    public static void attach(JTextArea area) {
+        logArea = area;
+        publishToUi("");
+    }
+
+    /**
+     * Writes everything queued so far synchronously.
+     */
+    public static void flush() {
+        String batch = writeBatch(null);
+        if (!batch.isEmpty()) {
+            System.out.flush();
+            publishToUi(batch);
+        }
+    }
+
+    private static void runFlusher() {
+        long lastFlush = System.nanoTime() - FLUSH_INTERVAL_NANOS;
+        while (true) {
+            try {
+                Object first = queue.take();
+                long wait = lastFlush + FLUSH_INTERVAL_NANOS - System.nanoTime();
+                if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                lastFlush = System.nanoTime();
+                publishToUi(writeBatch(first));
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                // 日志线程本身不能因为单次输出失败而退出
+            }
+        }
+    }
+
+    /**
+     * Writes the given message and everything queued after it to the console and returns the text for the log area.
+     */
+    private static synchronized String writeBatch(Object first) {
+        StringBuilder batch = new StringBuilder();
+        // 连续的同类行合并为一次输出，录制的输入事件只打印到控制台，不写入日志文件
+        StringBuilder run = new StringBuilder();
+        boolean runIsInput = false;
+        Object msg = first != null ? first : queue.poll();
+        while (msg != null) {
+            boolean input = msg instanceof LogMessage && ((LogMessage) msg).isInput();
+            if (input != runIsInput) {
+                printRun(run, runIsInput);
+                runIsInput = input;
+            }
+            int start = batch.length();
+            batch.append(msg).append('\n');
+            run.append(batch, start, batch.length());
+            msg = queue.poll();
+        }
+        long droppedNow = dropped.getAndSet(0);
+        if (droppedNow > 0) {
+            if (runIsInput) {
+                printRun(run, true);
+                runIsInput = false;
+            }
+            int start = batch.length();
+            batch.append(LogMessage.of(LangKeys.LOG_MESSAGES_DROPPED, droppedNow)).append('\n');
+            run.append(batch, start, batch.length());
+        }
+        printRun(run, runIsInput);
+        return batch.toString();
+    }
+
+    private static void printRun(StringBuilder run, boolean input) {
+        if (run.length() == 0) return;
+        if (input) ConsoleOutputCapturer.printConsoleOnly(run.toString());
+        else System.out.print(run);
+        run.setLength(0);
+    }
+
+    private static void publishToUi(String text) {
+        synchronized (pendingUi) {
+            pendingUi.append(text);
+            if (uiAppendScheduled || logArea == null || pendingUi.length() == 0) return;
+            uiAppendScheduled = true;
+        }
+        SwingUtilities.invokeLater(LogManager::appendPending);
+    }
+
+    private static void appendPending() {
+        String text;
+        synchronized (pendingUi) {
+            text = pendingUi.toString();
+            pendingUi.setLength(0);
+            uiAppendScheduled = false;
+        }
+        logArea.append(text);
     }
 }
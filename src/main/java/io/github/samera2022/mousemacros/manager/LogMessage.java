@@ -0,0 +1,59 @@
+package io.github.samera2022.mousemacros.manager;
+
+import io.github.samera2022.mousemacros.LangKeys;
+import io.github.samera2022.mousemacros.Localizer;
+
+import java.util.Arrays;
+import java.util.IllegalFormatException;
+
+/**
+ * A log line that is only formatted when it is written out. The caller passes a {@link LangKeys} pattern
+ * and its arguments; the log flusher looks up the pattern and applies {@link String#format} to it, so the
+ * calling thread does no string work and lines dropped under load are never formatted at all.
+ * <p>
+ * An argument that is itself a LogMessage is formatted in place, e.g. a localized button name.
+ * <p>
+ * Lines created with {@link #ofInput} describe captured keyboard or mouse input. They are shown in the log
+ * area and on the console but never written to the on-disk console log.
+ */
+public final class LogMessage {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final int pattern;
+    private final Object[] args;
+    private final boolean input;
+
+    private LogMessage(int pattern, Object[] args, boolean input) {
+        this.pattern = pattern;
+        this.args = args;
+        this.input = input;
+    }
+
+    public static LogMessage of(int pattern) {
+        return new LogMessage(pattern, NO_ARGS, false);
+    }
+
+    public static LogMessage of(int pattern, Object... args) {
+        return new LogMessage(pattern, args, false);
+    }
+
+    public static LogMessage ofInput(int pattern, Object... args) {
+        return new LogMessage(pattern, args, true);
+    }
+
+    public boolean isInput() {
+        return input;
+    }
+
+    @Override
+    public String toString() {
+        String text = Localizer.get(pattern);
+        if (args.length == 0) return text;
+        try {
+            return String.format(text, args);
+        } catch (IllegalFormatException e) {
+            // 翻译中的占位符有误时仍输出内容
+            return text + " " + Arrays.toString(args);
+        }
+    }
+}
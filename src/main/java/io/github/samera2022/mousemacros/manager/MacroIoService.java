@@ -0,0 +1,346 @@
+package io.github.samera2022.mousemacros.manager;
+
+import io.github.samera2022.mousemacros.Localizer;
+import io.github.samera2022.mousemacros.action.ActionCursor;
+import io.github.samera2022.mousemacros.action.MacroSource;
+import io.github.samera2022.mousemacros.macro.ChunkStore;
+import io.github.samera2022.mousemacros.macro.MappedMacroSource;
+import io.github.samera2022.mousemacros.macro.MmcFormat;
+import io.github.samera2022.mousemacros.macro.MmcWriter;
+import io.github.samera2022.mousemacros.macro.RecordingJournal;
+
+import javax.swing.*;
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+import static io.github.samera2022.mousemacros.manager.LogManager.log;
+
+/**
+ * Runs macro file serialization and parsing on a {@link SwingWorker}, one operation at a time.
+ * Progress goes to the attached progress bar; a cancelled or failed load leaves the current macro
+ * untouched, and a cancelled or failed save leaves the target file untouched (it is written to a
+ * temporary file and moved into place).
+ * <p>
+ * The service stays busy until the background work has really returned, not just until the worker is
+ * cancelled, and a save that has reached the final move can no longer be cancelled.
+ */
+public class MacroIoService {
+    private static volatile Worker<?> current = null;
+    private static JComponent progressPanel;
+    private static JProgressBar progressBar;
+
+    /**
+     * @param panel shown while an operation runs; contains the bar and whatever cancel control the caller provides.
+     */
+    public static void attach(JComponent panel, JProgressBar bar) {
+        progressPanel = panel;
+        progressBar = bar;
+        panel.setVisible(false);
+    }
+
+    public static boolean isBusy() {
+        return current != null;
+    }
+
+    public static void cancel() {
+        Worker<?> worker = current;
+        if (worker != null) worker.cancelUnlessCommitted();
+    }
+
+    /**
+     * Loads the file in the background and hands the result to {@code onLoaded} on the EDT.
+     */
+    public static void load(File file, Consumer<MacroSource> onLoaded) {
+        start(Localizer.get("main_frame.load_macro"), new Worker<MacroSource>() {
+            @Override
+            protected MacroSource work() throws IOException {
+                // 大的二进制文件直接映射，几乎不需要时间
+                if (file.length() >= MmcFormat.MAPPED_THRESHOLD && MmcFormat.isBinary(file)) {
+                    MappedMacroSource mapped = new MappedMacroSource(file);
+                    if (mapped.isTruncated()) log(Localizer.get("log.macro_truncated"));
+                    return mapped;
+                }
+                InputStream raw = new BufferedInputStream(new FileInputStream(file));
+                long total = file.length();
+                // 分块存储的宏按重组后的长度报告进度
+                if (ChunkStore.isManifest(raw)) {
+                    ChunkStore.Manifest manifest = ChunkStore.Manifest.read(raw);
+                    raw.close();
+                    raw = manifest.open(file);
+                    total = manifest.getLength();
+                }
+                try (InputStream in = new ProgressInputStream(raw, total, this::report)) {
+                    return MmcFormat.read(in, (lineNum, ex) ->
+                            log(Localizer.get("log.macro_loading_line_error") + lineNum + ": " + ex.getMessage()));
+                } catch (MmcFormat.TruncatedException e) {
+                    // 不完整的文件仍加载已完整的部分，但必须提示用户
+                    log(Localizer.get("log.macro_truncated"));
+                    return e.getPartial();
+                }
+            }
+
+            @Override
+            protected void succeeded(MacroSource result) {
+                onLoaded.accept(result);
+            }
+
+            @Override
+            protected void failed(Exception e) {
+                log(Localizer.get("log.macro_loading_failed") + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Saves the source in the background; {@code journaled} means the finished recording journal holds
+     * exactly this source and can be copied instead of serializing again.
+     */
+    public static void save(MacroSource source, File target, boolean journaled, Runnable onSaved) {
+        start(Localizer.get("main_frame.save_macro"), new Worker<Void>() {
+            @Override
+            protected Void work() throws IOException {
+                // 内存映射的宏本身就是该文件，无需重写
+                if (source instanceof MappedMacroSource
+                        && ((MappedMacroSource) source).getFile().getCanonicalFile().equals(target.getCanonicalFile())) {
+                    return null;
+                }
+                File dir = target.getAbsoluteFile().getParentFile();
+                // 每次保存使用独立的临时文件，不会与同一目标的其他保存冲突
+                File temp = Files.createTempFile(dir.toPath(), target.getName(), ".tmp").toFile();
+                try {
+                    if (ChunkStore.appliesTo(target)) {
+                        // 分块存储：目标文件只保存块引用清单；存储目录以外的文件总是完整保存
+                        try (OutputStream out = ChunkStore.create(new FileOutputStream(temp))) {
+                            if (journaled) {
+                                RecordingJournal.copyTo(out);
+                            } else {
+                                try (MmcWriter writer = new MmcWriter(out)) {
+                                    writer.writeAll(new ProgressCursor(source.cursor(), source.getActionCount(), this::report));
+                                }
+                            }
+                        }
+                    } else if (journaled) {
+                        // 录制时的日志已是完整的v2文件，直接复制而不重新序列化
+                        RecordingJournal.copyTo(temp);
+                    } else {
+                        try (MmcWriter writer = new MmcWriter(new FileOutputStream(temp))) {
+                            writer.writeAll(new ProgressCursor(source.cursor(), source.getActionCount(), this::report));
+                        }
+                    }
+                    if (!commit()) throw new CancellationException();
+                    try {
+                        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } finally {
+                    Files.deleteIfExists(temp.toPath());
+                }
+                // 覆盖存储目录中的清单后，旧清单独占的块不再被引用
+                if (ChunkStore.isInStorage(target)) {
+                    try {
+                        ChunkStore.sweep();
+                    } catch (IOException e) {
+                        // 清理失败不影响已完成的保存，下次保存时会再次清理
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            protected void succeeded(Void result) {
+                onSaved.run();
+            }
+
+            @Override
+            protected void failed(Exception e) {
+                log(Localizer.get("log.macro_saving_failed") + e.getMessage());
+            }
+        });
+    }
+
+    private static void start(String title, Worker<?> worker) {
+        if (current != null) {
+            log(Localizer.get("log.macro_io_busy"));
+            return;
+        }
+        current = worker;
+        if (progressBar != null) {
+            progressBar.setIndeterminate(true);
+            progressBar.setValue(0);
+            progressBar.setString(title);
+            progressBar.setStringPainted(true);
+            progressPanel.setVisible(true);
+            progressPanel.revalidate();
+        }
+        worker.execute();
+    }
+
+    private abstract static class Worker<T> extends SwingWorker<T, Integer> {
+        private int lastPercent = -1;
+        // 进入提交阶段后不再响应取消，与cancelUnlessCommitted互斥
+        private boolean committed = false;
+        // 在开始前被取消时doInBackground不会执行，由done()释放服务
+        private boolean started = false;
+        private boolean abandoned = false;
+
+        protected abstract T work() throws Exception;
+
+        @Override
+        protected final T doInBackground() throws Exception {
+            synchronized (this) {
+                if (abandoned) return null;
+                started = true;
+            }
+            try {
+                return work();
+            } finally {
+                // 后台工作真正结束后才释放服务，取消只会让done()提前执行
+                SwingUtilities.invokeLater(this::release);
+            }
+        }
+
+        private void release() {
+            if (current != this) return;
+            current = null;
+            if (progressPanel != null) progressPanel.setVisible(false);
+        }
+
+        /**
+         * @return false if the worker was cancelled; otherwise later cancel requests are ignored.
+         */
+        synchronized boolean commit() {
+            if (isCancelled()) return false;
+            committed = true;
+            return true;
+        }
+
+        synchronized void cancelUnlessCommitted() {
+            if (!committed) cancel(true);
+        }
+
+        // 只在百分比变化时发布，避免刷屏EDT
+        void report(long done, long total) {
+            if (total <= 0) return;
+            int percent = (int) Math.min(100, done * 100 / total);
+            if (percent != lastPercent) {
+                lastPercent = percent;
+                publish(percent);
+            }
+        }
+
+        protected abstract void succeeded(T result);
+
+        protected abstract void failed(Exception e);
+
+        @Override
+        protected void process(List<Integer> chunks) {
+            if (progressBar == null || current != this) return;
+            progressBar.setIndeterminate(false);
+            progressBar.setValue(chunks.get(chunks.size() - 1));
+        }
+
+        @Override
+        protected void done() {
+            synchronized (this) {
+                if (!started) abandoned = true;
+            }
+            if (abandoned) release();
+            if (isCancelled()) {
+                log(Localizer.get("log.macro_io_cancelled"));
+                return;
+            }
+            T result;
+            try {
+                result = get();
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof InterruptedIOException || cause instanceof CancellationException) {
+                    log(Localizer.get("log.macro_io_cancelled"));
+                } else {
+                    failed(cause instanceof Exception ? (Exception) cause : e);
+                }
+                return;
+            }
+            succeeded(result);
+        }
+    }
+
+    private interface ProgressSink {
+        void report(long done, long total);
+    }
+
+    // 统计已读取的字节数，并在任务被取消（线程中断）时中止读取
+    private static final class ProgressInputStream extends FilterInputStream {
+        private final long total;
+        private final ProgressSink sink;
+        private long done = 0;
+
+        ProgressInputStream(InputStream in, long total, ProgressSink sink) {
+            super(in);
+            this.total = total;
+            this.sink = sink;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            int b = super.read();
+            if (b >= 0) sink.report(++done, total);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                done += n;
+                sink.report(done, total);
+            }
+            return n;
+        }
+
+        private static void checkCancelled() throws InterruptedIOException {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException();
+        }
+    }
+
+    // 统计已写出的动作数，并在任务被取消时中止写入
+    private static final class ProgressCursor implements ActionCursor {
+        private final ActionCursor cursor;
+        private final long total;
+        private final ProgressSink sink;
+        private long done = 0;
+
+        ProgressCursor(ActionCursor cursor, long total, ProgressSink sink) {
+            this.cursor = cursor;
+            this.total = total;
+            this.sink = sink;
+        }
+
+        @Override
+        public boolean next() {
+            if ((++done & 0xFFF) == 0) {
+                if (Thread.currentThread().isInterrupted()) throw new CancellationException();
+                sink.report(done, total);
+            }
+            return cursor.next();
+        }
+
+        @Override public void rewind() { cursor.rewind(); done = 0; }
+        @Override public int x() { return cursor.x(); }
+        @Override public int y() { return cursor.y(); }
+        @Override public int type() { return cursor.type(); }
+        @Override public int button() { return cursor.button(); }
+        @Override public long delay() { return cursor.delay(); }
+        @Override public int wheelAmount() { return cursor.wheelAmount(); }
+        @Override public int keyCode() { return cursor.keyCode(); }
+        @Override public int awtKeyCode() { return cursor.awtKeyCode(); }
+    }
+}
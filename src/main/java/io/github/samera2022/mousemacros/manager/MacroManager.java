@@ -1,144 +1,205 @@
 package io.github.samera2022.mousemacros.manager;
 
-import io.github.samera2022.mousemacros.action.MouseAction;
+import io.github.samera2022.mousemacros.action.MacroSource;
+import io.github.samera2022.mousemacros.action.MacroTrack;
+import io.github.samera2022.mousemacros.action.TrajectorySimplifier;
+import io.github.samera2022.mousemacros.LangKeys;
 import io.github.samera2022.mousemacros.Localizer;
 import io.github.samera2022.mousemacros.config.ConfigManager;
+import io.github.samera2022.mousemacros.config.ConfigSnapshot;
+import io.github.samera2022.mousemacros.ui.frame.settings.SettingsRegistry;
 import io.github.samera2022.mousemacros.constant.FileConsts;
+import io.github.samera2022.mousemacros.listener.InputRecorder;
+import io.github.samera2022.mousemacros.macro.MappedMacroSource;
+import io.github.samera2022.mousemacros.macro.RecordingJournal;
+import io.github.samera2022.mousemacros.playback.InputSink;
+import io.github.samera2022.mousemacros.playback.MacroSession;
+import io.github.samera2022.mousemacros.playback.PlaybackEngine;
+import io.github.samera2022.mousemacros.playback.RobotInputSink;
+import io.github.samera2022.mousemacros.ui.component.MacroInfoAccessory;
 import io.github.samera2022.mousemacros.ui.frame.MainFrame;
+import io.github.samera2022.mousemacros.util.ScreenUtil;
 
 import javax.swing.*;
 import java.awt.*;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
 
 import static io.github.samera2022.mousemacros.manager.LogManager.log;
 
 public class MacroManager {
-    private static boolean recording;
-    private static boolean playing = false;
-    private static boolean paused = false;
-    private static final Object pauseLock = new Object();
-    private static final List<MouseAction> actions = new ArrayList<>();
-    private static long lastTime = 0;
-    private static Thread playThread = null;
-    private static final Object playThreadLock = new Object();
-
-    private static int currentLoop = 0;
-    private static int currentActionIndex = 0;
-
-    // 标记当前是否正在执行回放产生的输入
-    private static volatile boolean isReplayingInput = false;
-
-    private static void preciseSleep(long millis) throws InterruptedException {
-        if (millis <= 0) {
-            return;
-        }
-        long sleepFor = millis - 1;
-        long spinFor = 1_000_000L;
+    private static volatile boolean recording;
+    private static volatile MacroTrack track = new MacroTrack();
+    // 回放所用的宏：录制/小文件为内存中的track，大文件为内存映射
+    private static volatile MacroSource source = track;
+    // 正在回放的宏；回放期间被替换的内存映射在回放结束后才解除映射
+    private static MacroSource playingSource = null;
+    private static volatile long lastTime = 0;
+    // 当前或最近一次回放的引擎
+    private static volatile PlaybackEngine engine = null;
+
+    // 回放输入的去向，null表示使用默认的Robot
+    private static volatile InputSink inputSink = null;
+
+    // 录制中的预写日志；journaledTrack为与已完成日志内容一致的录制，保存时可直接复制日志文件
+    private static volatile RecordingJournal journal = null;
+    private static MacroTrack journaledTrack = null;
+    // 磁盘上的日志所备份的宏，该宏被保存或丢弃后即删除日志
+    private static volatile MacroSource journalOwner = null;
+
+    // 本轮回放的漂移（最后一个动作的实际执行时间与时间轴截止时间之差）
+    private static volatile long lastLoopDriftNanos = 0;
+
+    static {
+        // 正常退出即放弃未保存的录制，不在磁盘上留下日志；录制中退出时保留，下次启动可恢复
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (!recording && journalOwner != null) RecordingJournal.delete();
+        }, "journal-shutdown-cleanup"));
+    }
 
-        if (sleepFor > 0) {
-            Thread.sleep(sleepFor);
+    // 与saveToFile的保存决定互斥：保存可能正在复制日志，此时开始录制会删除或截断日志文件
+    public static synchronized void startRecording() {
+        if (MacroIoService.isBusy()) {
+            log(Localizer.get("log.recording_io_busy"));
+            return;
         }
-
-        long end = System.nanoTime() + spinFor;
-        while (System.nanoTime() < end) {
-            // Busy-wait
+        track = new MacroTrack();
+        replaceSource(track);
+        ScreenUtil.refresh();
+        // 开始新录制即丢弃上一次录制的日志
+        discardJournal();
+        if (ConfigManager.snapshot().getBoolean(SettingsRegistry.ENABLE_RECORDING_JOURNAL)) {
+            try {
+                journal = RecordingJournal.start(RecordingJournal.FsyncPolicy.fromConfig());
+            } catch (IOException e) {
+                log(Localizer.get("log.journal_failed") + e.getMessage());
+            }
         }
-    }
-
-    public static void startRecording() {
-        actions.clear();
-        recording = true;
         lastTime = System.currentTimeMillis();
+        InputRecorder.begin();
+        recording = true;
         log(Localizer.get("log.start_recording"));
     }
 
     public static void stopRecording() {
         recording = false;
-        log(Localizer.get("log.stop_recording_msg1") + actions.size() + Localizer.get("log.stop_recording_msg2"));
+        // 等待采集线程处理完停止前已发布的事件，之后发布的事件不再写入track
+        InputRecorder.end();
+        track.trimToSize();
+        RecordingJournal finishing = journal;
+        journal = null;
+        if (finishing != null) {
+            try {
+                finishing.finish();
+                journaledTrack = track;
+            } catch (IOException e) {
+                log(Localizer.get("log.journal_failed") + e.getMessage());
+            }
+        }
+        log(Localizer.get("log.stop_recording_msg1") + track.size() + Localizer.get("log.stop_recording_msg2"));
+        if (finishing != null) journalOwner = track;
+        ConfigSnapshot config = ConfigManager.snapshot();
+        if (config.getBoolean(SettingsRegistry.ENABLE_TRAJECTORY_SIMPLIFICATION)) {
+            simplifyInBackground(track, config.getDouble(SettingsRegistry.TRAJECTORY_TOLERANCE));
+        }
+    }
+
+    // 停止录制可能来自全局热键，不能在JNativeHook线程上简化长录制；完成前回放或保存使用原始录制
+    private static void simplifyInBackground(MacroTrack recorded, double tolerance) {
+        Thread t = new Thread(() -> {
+            MacroTrack simplified = TrajectorySimplifier.simplify(recorded, tolerance);
+            synchronized (MacroManager.class) {
+                // 期间开始了新录制或加载了其他宏时丢弃结果
+                if (track != recorded || recording) return;
+                track = simplified;
+                replaceSource(simplified);
+                if (journalOwner == recorded) journalOwner = simplified;
+            }
+            log(String.format(Localizer.get("log.trajectory_simplified"), recorded.size() - simplified.size(), recorded.size()));
+        }, "trajectory-simplifier");
+        t.setDaemon(true);
+        t.start();
     }
 
     public static void play() {
-        if (paused) {
+        if (isPaused()) {
             resume();
             return;
         }
-        if (playing) {
+        if (isPlaying()) {
             return;
         }
-        if (actions.isEmpty()) {
+        if (source.isEmpty()) {
             log(Localizer.get("log.no_recorded_actions"));
             return;
         }
 
-        int repeatTime = ConfigManager.getInt("repeat_times");
-        if (repeatTime <= 0) repeatTime = 1;
+        // -1表示一直重复直到中止
+        ConfigSnapshot config = ConfigManager.snapshot();
+        int repeatTime = config.getInt(SettingsRegistry.REPEAT_TIME);
+        if (repeatTime < 0) repeatTime = MacroSession.INFINITE;
+        else if (repeatTime == 0) repeatTime = 1;
+        long repeatDelayNanos = Math.round(Math.max(0, config.getDouble(SettingsRegistry.REPEAT_DELAY)) * 1e9);
 
         log(Localizer.get("log.start_playback"));
-        playing = true;
-        paused = false;
-        currentLoop = 0;
-        currentActionIndex = 0;
-
-        int finalRepeatTime = repeatTime;
-        synchronized (playThreadLock) {
-            playThread = new Thread(() -> {
-                String abortReason = "COMPLETED";
-                try {
-                    for (int i = 0; i < finalRepeatTime; i++) {
-                        currentLoop = i;
-                        if (!playing || Thread.interrupted()) {
-                            abortReason = "INTERRUPTED";
-                            return;
-                        }
-                        for (int j = 0; j < actions.size(); j++) {
-                            currentActionIndex = j;
-                            MouseAction action = actions.get(j);
-
-                            synchronized (pauseLock) {
-                                while (paused) {
-                                    pauseLock.wait();
-                                }
-                            }
-                            if (!playing || Thread.interrupted()) {
-                                abortReason = "INTERRUPTED";
-                                return;
-                            }
-
-                            long sleepTime = ConfigManager.getBoolean("enable_quick_mode") ? 0 : action.delay;
-                            preciseSleep(sleepTime);
-
-                            isReplayingInput = true;
-                            try {
-                                action.perform();
-                            } finally {
-                                isReplayingInput = false;
-                            }
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    abortReason = "INTERRUPTED";
-                    log(Localizer.get("log.macro_aborted"));
-                } catch (Exception e) {
-                    abortReason = "EXCEPTION: " + e.getMessage();
-                    log(Localizer.get("log.playback_error") + e.getMessage());
-                } finally {
-                    playing = false;
-                    paused = false;
-                    synchronized (playThreadLock) {
-                        playThread = null;
-                    }
-                    if (abortReason.equals("COMPLETED")) {
-                        log(Localizer.get("log.playback_complete"));
-                    }
-                    SwingUtilities.invokeLater(MainFrame.MAIN_FRAME::refreshSpecialTexts);
+        ScreenUtil.refresh();
+        PlaybackEngine e = new PlaybackEngine(inputSink);
+        MacroSource played = source;
+        playbackStarted(played);
+        e.add(played, 0, repeatTime, repeatDelayNanos);
+        e.setListener(new PlaybackEngine.Listener() {
+            private long lastReport = 0;
+
+            @Override
+            public void loopFinished(MacroSession session, long driftNanos, long maxLatenessNanos) {
+                lastLoopDriftNanos = driftNanos;
+                // 重复上千次时不逐轮输出，每秒至多一次，最后一轮总会输出
+                long now = System.nanoTime();
+                boolean last = !session.isInfinite() && session.getCompletedLoops() >= session.getRepeatTimes();
+                if (!last && now - lastReport < 1_000_000_000L) return;
+                lastReport = now;
+                // 在播放线程上只记录参数，格式化交给日志线程
+                log(LogMessage.of(LangKeys.LOG_LOOP_DRIFT, session.getLoop() + 1, driftNanos / 1_000_000.0, maxLatenessNanos / 1_000_000.0));
+                if (session.isInfinite()) {
+                    log(LogMessage.of(LangKeys.LOG_LOOP_PROGRESS_INFINITE, session.getCompletedLoops(), session.getLoopsPerSecond()));
+                } else if (!last) {
+                    log(LogMessage.of(LangKeys.LOG_LOOP_PROGRESS, session.getCompletedLoops(), session.getRepeatTimes(),
+                            session.getLoopsPerSecond(), Math.max(0, session.getRemainingNanos()) / 1e9));
                 }
-            });
-        }
-        playThread.start();
+            }
+
+            @Override
+            public void finished(boolean completed, Exception error) {
+                if (error != null) {
+                    log(Localizer.get("log.playback_error") + error.getMessage());
+                } else if (completed) {
+                    log(Localizer.get("log.playback_complete"));
+                }
+                playbackFinished(e, played);
+                SwingUtilities.invokeLater(MainFrame.MAIN_FRAME::refreshSpecialTexts);
+            }
+        });
+        engine = e;
+        e.start();
+    }
+
+    // 替换当前宏时释放被替换的内存映射，否则Windows上该文件在GC之前无法被覆盖或删除
+    private static synchronized void replaceSource(MacroSource next) {
+        MacroSource old = source;
+        source = next;
+        if (old != next && old != playingSource && old instanceof MappedMacroSource) ((MappedMacroSource) old).close();
+    }
+
+    // 上一次回放的结束回调可能晚于新回放的开始，此时由这里释放上一次回放中被替换的映射
+    private static synchronized void playbackStarted(MacroSource played) {
+        MacroSource previous = playingSource;
+        playingSource = played;
+        if (previous != null && previous != played && previous instanceof MappedMacroSource) ((MappedMacroSource) previous).close();
+    }
+
+    private static synchronized void playbackFinished(PlaybackEngine finished, MacroSource played) {
+        if (engine != finished) return;
+        playingSource = null;
+        if (played != source && played instanceof MappedMacroSource) ((MappedMacroSource) played).close();
     }
 
     public static boolean isRecording() {
@@ -146,58 +207,72 @@ public class MacroManager {
     }
 
     public static boolean isPlaying() {
-        return playing;
+        PlaybackEngine e = engine;
+        return e != null && e.isRunning();
     }
 
     public static boolean isPaused() {
-        return paused;
+        PlaybackEngine e = engine;
+        return e != null && e.isPaused();
     }
 
     public static boolean isReplayingInput() {
-        return isReplayingInput;
+        PlaybackEngine e = engine;
+        return e != null && e.isDispatching();
+    }
+
+    /**
+     * @return the engine of the current or last playback, or null if nothing was played yet.
+     */
+    public static PlaybackEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Redirects the input produced by subsequent playbacks; null restores the default {@link RobotInputSink}.
+     */
+    public static void setInputSink(InputSink sink) {
+        inputSink = sink;
+    }
+
+    public static InputSink getInputSink() {
+        return inputSink;
+    }
+
+    public static long getLastLoopDriftNanos() {
+        return lastLoopDriftNanos;
     }
 
     public static void pause() {
-        if (playing && !paused) {
-            paused = true;
+        PlaybackEngine e = engine;
+        if (e != null && e.isRunning() && !e.isPaused()) {
+            e.pause();
             log(Localizer.get("log.macro_paused"));
             SwingUtilities.invokeLater(MainFrame.MAIN_FRAME::refreshSpecialTexts);
         }
     }
 
     public static void resume() {
-        if (playing && paused) {
-            synchronized (pauseLock) {
-                paused = false;
-                pauseLock.notifyAll();
-            }
+        PlaybackEngine e = engine;
+        if (e != null && e.isRunning() && e.isPaused()) {
+            e.resume();
             log(Localizer.get("log.macro_resumed"));
             SwingUtilities.invokeLater(MainFrame.MAIN_FRAME::refreshSpecialTexts);
         }
     }
 
     public static void abort() {
-        playing = false;
-        paused = false;
-        synchronized (pauseLock) {
-            pauseLock.notifyAll();
-        }
-        Thread toInterrupt = null;
-        synchronized (playThreadLock) {
-            if (playThread != null && playThread.isAlive()) {
-                log(Localizer.get("log.macro_aborted"));
-                toInterrupt = playThread;
-            }
-        }
-        if (toInterrupt != null) {
-            toInterrupt.interrupt();
+        PlaybackEngine e = engine;
+        if (e != null && e.abort()) {
+            log(Localizer.get("log.macro_aborted"));
         }
         SwingUtilities.invokeLater(MainFrame.MAIN_FRAME::refreshSpecialTexts);
     }
 
-    public static void recordAction(MouseAction action) {
-        actions.add(action);
-        lastTime = System.currentTimeMillis();
+    public static void recordAction(int x, int y, int type, int button, long delay, int wheelAmount, int keyCode, int awtKeyCode) {
+        track.add(x, y, type, button, delay, wheelAmount, keyCode, awtKeyCode);
+        RecordingJournal j = journal;
+        if (j != null) j.append(x, y, type, button, delay, wheelAmount, keyCode, awtKeyCode);
     }
 
     public static long getLastTime() {
@@ -208,8 +283,56 @@ public class MacroManager {
         lastTime = t;
     }
 
-    public static List<MouseAction> getActions() {
-        return actions;
+    public static MacroTrack getTrack() {
+        return track;
+    }
+
+    public static MacroSource getSource() {
+        return source;
+    }
+
+    /**
+     * Looks for a journal left behind by a recording that did not stop cleanly and, if one is found,
+     * asks whether to restore it. The journal is read on a background thread.
+     */
+    public static void offerJournalRecovery(Component parent) {
+        Thread t = new Thread(() -> {
+            MacroTrack recovered;
+            try {
+                recovered = RecordingJournal.recover();
+            } catch (IOException e) {
+                log(Localizer.get("log.journal_failed") + e.getMessage());
+                return;
+            }
+            if (recovered == null) return;
+            SwingUtilities.invokeLater(() -> {
+                String message = String.format(Localizer.get("journal_recovery.message"), recovered.size(), recovered.getDurationMillis() / 1000.0);
+                int option = JOptionPane.showConfirmDialog(parent, message, Localizer.get("journal_recovery.title"), JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+                if (option == JOptionPane.YES_OPTION) {
+                    if (recording || isPlaying()) return;
+                    // 日志保留到该宏被保存或丢弃，保存之前再次崩溃仍可恢复
+                    synchronized (MacroManager.class) {
+                        track = recovered;
+                        replaceSource(track);
+                        journaledTrack = null;
+                        journalOwner = recovered;
+                    }
+                    log(Localizer.get("log.journal_recovered") + recovered.size());
+                } else {
+                    RecordingJournal.delete();
+                }
+            });
+        }, "journal-recovery");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static void discardJournal() {
+        journaledTrack = null;
+        if (journalOwner != null) {
+            journalOwner = null;
+            RecordingJournal.delete();
+        }
     }
 
     public static void saveToFile(Component parent) {
@@ -243,15 +366,15 @@ public class MacroManager {
                 CacheManager.saveCache();
             }
 
-            String content = actions.stream()
-                    .map(a -> a.x + "," + a.y + "," + a.type + "," + a.button + "," + a.delay + "," + a.wheelAmount + "," + a.keyCode + "," + a.awtKeyCode)
-                    .collect(Collectors.joining("\n"));
-
-            try (PrintWriter out = new PrintWriter(selectedFile, StandardCharsets.UTF_8)) {
-                out.print(content);
-                log(Localizer.get("log.macro_saved") + chooser.getSelectedFile().getAbsolutePath());
-            } catch (Exception ex) {
-                log(Localizer.get("log.macro_saving_failed") + ex.getMessage());
+            File target = selectedFile;
+            // 决定是否复制日志与启动保存在同一锁内完成，保存开始后startRecording会因忙碌而拒绝
+            synchronized (MacroManager.class) {
+                MacroSource saved = source;
+                MacroIoService.save(saved, target, saved == journaledTrack && RecordingJournal.JOURNAL_FILE.isFile(), () -> {
+                    log(Localizer.get("log.macro_saved") + target.getAbsolutePath());
+                    // 录制已保存到用户选择的文件，不再需要日志
+                    if (saved == journalOwner) discardJournal();
+                });
             }
         }
     }
@@ -274,6 +397,7 @@ public class MacroManager {
             }
         }
         chooser.setFileFilter(FileConsts.MMC_FILTER);
+        chooser.setAccessory(new MacroInfoAccessory(chooser));
 
         if (chooser.showOpenDialog(parent) == JFileChooser.APPROVE_OPTION) {
             File selectedFile = chooser.getSelectedFile();
@@ -284,59 +408,22 @@ public class MacroManager {
                 CacheManager.saveCache();
             }
 
-            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(selectedFile), StandardCharsets.UTF_8))) {
-                String rawContent = in.lines().collect(Collectors.joining("\n"));
-
-                String[] lines = rawContent.split("\n");
-                actions.clear();
-                int lineNum = 0;
-                for (String line : lines) {
-                    lineNum++;
-                    try {
-                        String[] arr = line.split(",");
-                        if (arr.length == 8) {
-                            int x = Integer.parseInt(arr[0]);
-                            int y = Integer.parseInt(arr[1]);
-                            int type = Integer.parseInt(arr[2]);
-                            int button = Integer.parseInt(arr[3]);
-                            long delay = Long.parseLong(arr[4]);
-                            int wheelAmount = Integer.parseInt(arr[5]);
-                            int keyCode = Integer.parseInt(arr[6]);
-                            int awtKeyCode = Integer.parseInt(arr[7]);
-                            actions.add(new MouseAction(x, y, type, button, delay, wheelAmount, keyCode, awtKeyCode));
-                        } else if (arr.length == 7) {
-                            int x = Integer.parseInt(arr[0]);
-                            int y = Integer.parseInt(arr[1]);
-                            int type = Integer.parseInt(arr[2]);
-                            int button = Integer.parseInt(arr[3]);
-                            long delay = Long.parseLong(arr[4]);
-                            int wheelAmount = Integer.parseInt(arr[5]);
-                            int keyCode = Integer.parseInt(arr[6]);
-                            actions.add(new MouseAction(x, y, type, button, delay, wheelAmount, keyCode, 0));
-                        } else if (arr.length == 6) {
-                            int x = Integer.parseInt(arr[0]);
-                            int y = Integer.parseInt(arr[1]);
-                            int type = Integer.parseInt(arr[2]);
-                            int button = Integer.parseInt(arr[3]);
-                            long delay = Long.parseLong(arr[4]);
-                            int wheelAmount = Integer.parseInt(arr[5]);
-                            actions.add(new MouseAction(x, y, type, button, delay, wheelAmount, 0, 0));
-                        } else if (arr.length == 5) {
-                            int x = Integer.parseInt(arr[0]);
-                            int y = Integer.parseInt(arr[1]);
-                            int type = Integer.parseInt(arr[2]);
-                            int button = Integer.parseInt(arr[3]);
-                            long delay = Long.parseLong(arr[4]);
-                            actions.add(new MouseAction(x, y, type, button, delay, 0, 0, 0));
-                        }
-                    } catch (Exception ex) {
-                        log(Localizer.get("log.macro_loading_line_error") + lineNum + ": " + ex.getMessage());
-                    }
+            MacroIoService.load(selectedFile, loaded -> {
+                // 加载期间开始了新的录制时，不能用加载结果覆盖它
+                if (recording) {
+                    log(Localizer.get("log.macro_io_cancelled"));
+                    return;
                 }
-                log(Localizer.get("log.macro_loaded_msg1") + selectedFile.getAbsolutePath() + " (" + actions.size() + " " + Localizer.get("log.macro_loaded_msg2") + ")");
-            } catch (Exception ex) {
-                log(Localizer.get("log.macro_loading_failed") + ex.getMessage());
-            }
+                // 只有完整读取成功才整体替换，失败或取消时保留原来的宏；与轨迹简化的结果发布互斥
+                synchronized (MacroManager.class) {
+                    track = loaded instanceof MacroTrack ? (MacroTrack) loaded : new MacroTrack();
+                    replaceSource(loaded);
+                    // 加载的宏替换了未保存的录制，其日志随之丢弃
+                    discardJournal();
+                }
+                long count = loaded.getActionCount();
+                log(Localizer.get("log.macro_loaded_msg1") + selectedFile.getAbsolutePath() + " (" + (count >= 0 ? count : "?") + " " + Localizer.get("log.macro_loaded_msg2") + ")");
+            });
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+package io.github.samera2022.mousemacros.manager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind for small state files such as config.cfg and cache.json. {@link #schedule} only records the
+ * latest content supplier for a file; a daemon thread waits until no save has been requested for
+ * {@link #DEBOUNCE_MILLIS} (or at most {@link #MAX_DELAY_MILLIS} under a steady stream of saves), then
+ * serializes and replaces each dirty file atomically, so a burst of saves costs one write and a crash
+ * never leaves a half-written file. A shutdown hook flushes whatever is still pending.
+ * <p>
+ * Suppliers run on the writer thread, so callers hand over a snapshot of their state rather than live objects.
+ */
+public class PersistenceService {
+    public static final long DEBOUNCE_MILLIS = 300;
+    public static final long MAX_DELAY_MILLIS = 2000;
+
+    private static final Map<Path, Supplier<String>> pending = new LinkedHashMap<>();
+    // 写线程与flush共用，保证同一文件的新内容不会被旧内容覆盖
+    private static final Object writeLock = new Object();
+    private static long firstRequest;
+    private static long lastRequest;
+
+    static {
+        Thread writer = new Thread(PersistenceService::runWriter, "persistence-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(PersistenceService::flush, "persistence-shutdown-flush"));
+    }
+
+    /**
+     * Marks {@code file} dirty; an earlier pending supplier for the same file is replaced.
+     */
+    public static void schedule(Path file, Supplier<String> content) {
+        synchronized (pending) {
+            long now = System.currentTimeMillis();
+            if (pending.isEmpty()) firstRequest = now;
+            lastRequest = now;
+            pending.put(file, content);
+            pending.notifyAll();
+        }
+    }
+
+    /**
+     * Writes everything pending now, on the calling thread.
+     */
+    public static void flush() {
+        synchronized (writeLock) {
+            writeAll(drain());
+        }
+    }
+
+    private static void runWriter() {
+        while (true) {
+            try {
+                synchronized (pending) {
+                    while (true) {
+                        if (pending.isEmpty()) {
+                            pending.wait();
+                            continue;
+                        }
+                        long now = System.currentTimeMillis();
+                        long due = Math.min(lastRequest + DEBOUNCE_MILLIS, firstRequest + MAX_DELAY_MILLIS);
+                        if (now >= due) break;
+                        pending.wait(due - now);
+                    }
+                }
+                flush();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                // 写线程不能因为单次序列化失败而退出
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static List<Map.Entry<Path, Supplier<String>>> drain() {
+        synchronized (pending) {
+            List<Map.Entry<Path, Supplier<String>>> batch = new ArrayList<>(pending.entrySet());
+            pending.clear();
+            return batch;
+        }
+    }
+
+    private static void writeAll(List<Map.Entry<Path, Supplier<String>>> batch) {
+        for (Map.Entry<Path, Supplier<String>> entry : batch) {
+            try {
+                writeAtomically(entry.getKey(), entry.getValue().get());
+            } catch (IOException e) {
+                System.err.println("Failed to save " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes {@code content} to a temp file next to {@code file} and renames it over the target.
+     */
+    public static void writeAtomically(Path file, String content) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
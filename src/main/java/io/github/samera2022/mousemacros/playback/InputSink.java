@@ -0,0 +1,22 @@
+package io.github.samera2022.mousemacros.playback;
+
+/**
+ * Receives the low-level input produced by playback. Coordinates are screen coordinates as
+ * understood by {@link java.awt.Robot}, buttons are AWT button masks and keys are AWT key codes.
+ * <p>
+ * The default is {@link RobotInputSink}; {@link NullInputSink} and {@link RecordingInputSink}
+ * allow playback to run without a display, e.g. for benchmarks and replay verification.
+ */
+public interface InputSink {
+    void mouseMove(int x, int y);
+
+    void mousePress(int buttonMask);
+
+    void mouseRelease(int buttonMask);
+
+    void mouseWheel(int amount);
+
+    void keyPress(int keyCode);
+
+    void keyRelease(int keyCode);
+}
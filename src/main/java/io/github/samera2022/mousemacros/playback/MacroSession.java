@@ -0,0 +1,204 @@
+package io.github.samera2022.mousemacros.playback;
+
+import io.github.samera2022.mousemacros.action.MacroSource;
+import io.github.samera2022.mousemacros.config.ConfigManager;
+import io.github.samera2022.mousemacros.config.ConfigSnapshot;
+import io.github.samera2022.mousemacros.ui.frame.settings.SettingsRegistry;
+import io.github.samera2022.mousemacros.util.ScreenUtil;
+
+/**
+ * One macro scheduled on a {@link PlaybackEngine}: its compiled plan, repeat count, start delay and
+ * the position and deadline of its next action. Only the engine's dispatcher thread changes the state;
+ * the getters may be read from other threads for display.
+ * <p>
+ * All repeats lie on one absolute timeline: each loop starts exactly the repeat delay after the
+ * scheduled end of the previous one, so lateness in one loop is not carried into the next, and
+ * starting a loop costs nothing beyond rewinding the plan.
+ * <p>
+ * Quick mode and the timing strategy are taken from the snapshot passed to {@link #compile} and
+ * re-read from the latest published snapshot whenever a loop rolls over, so changes apply from the next repeat.
+ */
+public final class MacroSession {
+    /**
+     * Repeat count meaning "until aborted".
+     */
+    public static final int INFINITE = -1;
+
+    private final MacroSource source;
+    private final long startDelayNanos;
+    private final int repeatTimes;
+    private final long repeatDelayNanos;
+    // 加入引擎的顺序，截止时间相同时先加入的先执行
+    final int seq;
+
+    private PlaybackPlan.Blocks blocks;
+    PlaybackPlan.Block block;
+    int index;
+    private volatile int loop;
+    private volatile long actionIndex;
+    private boolean quickMode;
+    TimingStrategy timing;
+    private volatile long loopStart;
+    private long offset;
+    long deadline;
+    private long maxLateness;
+    // 一轮在时间轴上的长度，流式计划在第一轮结束后才知道；快速模式下为0
+    private volatile long loopNanos = -1;
+    // 不计快速模式时一轮的长度，切换快速模式时据此恢复loopNanos
+    private long timelineNanos = -1;
+    private volatile long startNanos;
+    private volatile long pausedNanos;
+    private volatile int completedLoops;
+    private volatile boolean done;
+
+    MacroSession(MacroSource source, long startDelayNanos, int repeatTimes, long repeatDelayNanos, int seq) {
+        this.source = source;
+        this.startDelayNanos = startDelayNanos;
+        this.repeatTimes = repeatTimes;
+        this.repeatDelayNanos = Math.max(0, repeatDelayNanos);
+        this.seq = seq;
+    }
+
+    public MacroSource getSource() {
+        return source;
+    }
+
+    /**
+     * @return the number of loops, or {@link #INFINITE}.
+     */
+    public int getRepeatTimes() {
+        return repeatTimes;
+    }
+
+    public boolean isInfinite() {
+        return repeatTimes < 0;
+    }
+
+    /**
+     * @return the zero-based loop being played.
+     */
+    public int getLoop() {
+        return loop;
+    }
+
+    public int getCompletedLoops() {
+        return completedLoops;
+    }
+
+    /**
+     * @return the index of the action within the current loop that is dispatched next.
+     */
+    public long getActionIndex() {
+        return actionIndex;
+    }
+
+    /**
+     * @return completed loops per second of playing time (pauses excluded), or 0 before the first loop ends.
+     */
+    public double getLoopsPerSecond() {
+        int completed = completedLoops;
+        long elapsed = System.nanoTime() - startNanos - pausedNanos;
+        return completed > 0 && elapsed > 0 ? completed * 1e9 / elapsed : 0;
+    }
+
+    /**
+     * @return the estimated time until the last loop ends, 0 once done, or -1 if playing until aborted
+     *         or not yet known.
+     */
+    public long getRemainingNanos() {
+        if (done) return 0;
+        if (isInfinite()) return -1;
+        int remaining = repeatTimes - loop;
+        long length = loopNanos;
+        if (!quickMode && length >= 0) {
+            // 按时间轴推算：当前轮起点 + 剩余轮数 * (一轮 + 间隔) - 最后一轮之后的间隔
+            long end = loopStart + remaining * (length + repeatDelayNanos) - repeatDelayNanos;
+            return Math.max(0, end - System.nanoTime());
+        }
+        double lps = getLoopsPerSecond();
+        return lps > 0 ? (long) ((repeatTimes - completedLoops) / lps * 1e9) : -1;
+    }
+
+    void compile(ScreenUtil.Geometry geometry, ConfigSnapshot config) {
+        PlaybackPlan plan = PlaybackPlan.compile(source, geometry);
+        blocks = plan.blocks();
+        timelineNanos = plan.getDurationNanos();
+        applyConfig(config);
+    }
+
+    private void applyConfig(ConfigSnapshot config) {
+        quickMode = config.getBoolean(SettingsRegistry.ENABLE_QUICK_MODE);
+        timing = TimingStrategy.fromConfig(config);
+        loopNanos = quickMode ? 0 : timelineNanos;
+    }
+
+    /**
+     * Positions the session on its first action, with the timeline starting at {@code origin} plus the start delay.
+     * @return false if there is nothing to play.
+     */
+    boolean begin(long origin) {
+        loop = 0;
+        completedLoops = 0;
+        actionIndex = -1;
+        startNanos = origin + startDelayNanos;
+        pausedNanos = 0;
+        loopStart = startNanos;
+        block = null;
+        done = !next(null);
+        return !done;
+    }
+
+    /**
+     * Moves to the action after the one just dispatched, starting the next loop when this one ends.
+     * @return false once all loops are done.
+     */
+    boolean advance(PlaybackEngine engine) {
+        if (!next(engine)) {
+            done = true;
+            return false;
+        }
+        return true;
+    }
+
+    private boolean next(PlaybackEngine engine) {
+        index++;
+        while (block == null || index >= block.size()) {
+            block = blocks.next();
+            index = 0;
+            if (block == null) {
+                // 空的宏或本轮结束
+                if (engine == null || actionIndex < 0) return false;
+                long loopEnd = loopStart + offset;
+                if (timelineNanos < 0 && !quickMode) timelineNanos = offset;
+                if (loopNanos < 0) loopNanos = timelineNanos;
+                completedLoops = loop + 1;
+                engine.loopFinished(this, System.nanoTime() - loopEnd, maxLateness);
+                if (repeatTimes >= 0 && loop + 1 >= repeatTimes) return false;
+                loop++;
+                actionIndex = -1;
+                blocks.rewind();
+                // 快速模式下时间轴不前移，间隔从实际结束时刻算起
+                loopStart = (quickMode ? Math.max(System.nanoTime(), loopEnd) : loopEnd) + repeatDelayNanos;
+                offset = 0;
+                maxLateness = 0;
+                // 一轮结束时读取最新配置，快速模式与计时方式的修改从下一轮生效
+                applyConfig(ConfigManager.snapshot());
+            }
+        }
+        actionIndex++;
+        if (!quickMode) offset += block.delayNanos(index);
+        deadline = loopStart + offset;
+        return true;
+    }
+
+    void recordLateness(long lateness) {
+        if (lateness > maxLateness) maxLateness = lateness;
+    }
+
+    // 暂停期间整体平移时间轴，恢复后不会为了追赶而连续执行
+    void shift(long nanos) {
+        loopStart += nanos;
+        deadline += nanos;
+        pausedNanos += nanos;
+    }
+}
@@ -0,0 +1,28 @@
+package io.github.samera2022.mousemacros.playback;
+
+/**
+ * Discards all input; measures the playback engine alone.
+ */
+public final class NullInputSink implements InputSink {
+    public static final NullInputSink INSTANCE = new NullInputSink();
+
+    private NullInputSink() {}
+
+    @Override
+    public void mouseMove(int x, int y) {}
+
+    @Override
+    public void mousePress(int buttonMask) {}
+
+    @Override
+    public void mouseRelease(int buttonMask) {}
+
+    @Override
+    public void mouseWheel(int amount) {}
+
+    @Override
+    public void keyPress(int keyCode) {}
+
+    @Override
+    public void keyRelease(int keyCode) {}
+}
@@ -0,0 +1,198 @@
+package io.github.samera2022.mousemacros.playback;
+
+import io.github.samera2022.mousemacros.action.MacroSource;
+import io.github.samera2022.mousemacros.config.ConfigManager;
+import io.github.samera2022.mousemacros.config.ConfigSnapshot;
+import io.github.samera2022.mousemacros.util.ScreenUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Plays any number of {@link MacroSession}s on one dispatcher thread. All sessions share a single
+ * timeline that starts when the engine starts; the session whose next action is due first is always
+ * dispatched next, and ties go to the session added first, so the merged order is deterministic.
+ * <p>
+ * Sessions are added before {@link #start()}; an engine runs once.
+ */
+public class PlaybackEngine {
+    private static final Comparator<MacroSession> DUE_ORDER =
+            Comparator.comparingLong((MacroSession s) -> s.deadline).thenComparingInt(s -> s.seq);
+
+    /**
+     * Callbacks from the dispatcher thread.
+     */
+    public interface Listener {
+        /**
+         * @param driftNanos       how late the last action of the loop ran relative to its deadline.
+         * @param maxLatenessNanos the largest lateness of any action in the loop.
+         */
+        void loopFinished(MacroSession session, long driftNanos, long maxLatenessNanos);
+
+        /**
+         * @param completed true if every session played all its loops, false if aborted or failed.
+         * @param error     the exception that stopped playback, or null.
+         */
+        void finished(boolean completed, Exception error);
+    }
+
+    private final InputSink sink;
+    private final List<MacroSession> sessions = new ArrayList<>();
+    private final PriorityQueue<MacroSession> queue = new PriorityQueue<>(DUE_ORDER);
+    private final Object pauseLock = new Object();
+    private Listener listener;
+    private Thread thread;
+    private volatile boolean running = false;
+    private volatile boolean paused = false;
+    private volatile boolean dispatching = false;
+
+    /**
+     * @param sink where input goes; null means the default {@link RobotInputSink}.
+     */
+    public PlaybackEngine(InputSink sink) {
+        this.sink = sink;
+    }
+
+    public MacroSession add(MacroSource source, long startDelayNanos, int repeatTimes) {
+        return add(source, startDelayNanos, repeatTimes, 0);
+    }
+
+    /**
+     * @param startDelayNanos  offset of this macro's timeline from the engine start, for staggered starts.
+     * @param repeatTimes      number of loops, or {@link MacroSession#INFINITE} to repeat until aborted.
+     * @param repeatDelayNanos pause between the end of one loop and the start of the next.
+     */
+    public synchronized MacroSession add(MacroSource source, long startDelayNanos, int repeatTimes, long repeatDelayNanos) {
+        if (thread != null) throw new IllegalStateException("Engine already started");
+        MacroSession session = new MacroSession(source, startDelayNanos, repeatTimes, repeatDelayNanos, sessions.size());
+        sessions.add(session);
+        return session;
+    }
+
+    public List<MacroSession> getSessions() {
+        return Collections.unmodifiableList(sessions);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (thread != null) throw new IllegalStateException("Engine already started");
+        running = true;
+        thread = new Thread(this::run, "playback-engine");
+        thread.start();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @return true while an action is being sent to the sink, so listeners can ignore the input it produces.
+     */
+    public boolean isDispatching() {
+        return dispatching;
+    }
+
+    public void pause() {
+        if (running) paused = true;
+    }
+
+    public void resume() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops playback; the dispatcher exits before its next action.
+     * @return true if the dispatcher was still running.
+     */
+    public boolean abort() {
+        running = false;
+        resume();
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t == null || !t.isAlive()) return false;
+        t.interrupt();
+        return true;
+    }
+
+    public void join() throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t != null) t.join();
+    }
+
+    void loopFinished(MacroSession session, long driftNanos, long maxLatenessNanos) {
+        if (listener != null) listener.loopFinished(session, driftNanos, maxLatenessNanos);
+    }
+
+    private void run() {
+        boolean completed = false;
+        Exception error = null;
+        try {
+            InputSink out = sink != null ? sink : RobotInputSink.getDefault();
+            // 编译一次：坐标变换、按键掩码、键码在开始前全部解析完毕
+            ScreenUtil.Geometry geometry = ScreenUtil.getGeometry();
+            // 所有会话使用同一份配置快照
+            ConfigSnapshot config = ConfigManager.snapshot();
+            for (MacroSession s : sessions) s.compile(geometry, config);
+            long origin = System.nanoTime();
+            for (MacroSession s : sessions) {
+                if (s.begin(origin)) queue.add(s);
+            }
+            while (!queue.isEmpty()) {
+                awaitResume();
+                if (!running || Thread.interrupted()) return;
+                MacroSession s = queue.peek();
+                s.timing.sleepUntil(s.deadline);
+                queue.poll();
+                s.recordLateness(System.nanoTime() - s.deadline);
+                dispatching = true;
+                try {
+                    s.block.dispatch(s.index, out);
+                } finally {
+                    dispatching = false;
+                }
+                if (s.advance(this)) queue.add(s);
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            // 被中止
+        } catch (Exception e) {
+            error = e;
+        } finally {
+            running = false;
+            paused = false;
+            queue.clear();
+            if (listener != null) listener.finished(completed, error);
+        }
+    }
+
+    private void awaitResume() throws InterruptedException {
+        synchronized (pauseLock) {
+            if (!paused) return;
+            long pauseStart = System.nanoTime();
+            while (paused) {
+                pauseLock.wait();
+            }
+            // 所有会话平移相同的时间，队列中的先后顺序不变
+            long pausedFor = System.nanoTime() - pauseStart;
+            for (MacroSession s : queue) s.shift(pausedFor);
+        }
+    }
+}
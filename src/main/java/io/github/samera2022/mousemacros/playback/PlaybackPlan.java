@@ -0,0 +1,268 @@
+package io.github.samera2022.mousemacros.playback;
+
+import io.github.samera2022.mousemacros.LangKeys;
+import io.github.samera2022.mousemacros.action.ActionCursor;
+import io.github.samera2022.mousemacros.action.MacroSource;
+import io.github.samera2022.mousemacros.manager.LogMessage;
+import io.github.samera2022.mousemacros.util.ScreenUtil;
+
+import java.awt.event.InputEvent;
+
+import static io.github.samera2022.mousemacros.manager.LogManager.log;
+
+/**
+ * A macro compiled for playback: every action is reduced to an opcode with Robot-ready
+ * operands (screen coordinates, button masks, AWT key codes) and its delay in nanoseconds,
+ * so the play loop only waits for the deadline and dispatches.
+ * <p>
+ * The plan is built once per {@code play()} against a fixed screen geometry. Sources with up to
+ * {@link #RESIDENT_LIMIT} actions are compiled into a single block that every loop reuses; larger
+ * ones (typically memory-mapped files) are compiled block by block as each loop streams through them.
+ */
+public final class PlaybackPlan {
+    public static final byte OP_MOVE = 0;
+    public static final byte OP_PRESS = 1;
+    public static final byte OP_RELEASE = 2;
+    public static final byte OP_WHEEL = 3;
+    public static final byte OP_KEY_PRESS = 4;
+    public static final byte OP_KEY_RELEASE = 5;
+
+    static final int BLOCK_SIZE = 1 << 16;
+    // 约17字节/动作，400万动作时约68MB
+    static final long RESIDENT_LIMIT = 1L << 22;
+
+    private final MacroSource source;
+    private final ScreenUtil.Geometry geometry;
+    private final Block resident;
+    private final long durationNanos;
+
+    private PlaybackPlan(MacroSource source, ScreenUtil.Geometry geometry, Block resident) {
+        this.source = source;
+        this.geometry = geometry;
+        this.resident = resident;
+        long sum = -1;
+        if (resident != null) {
+            sum = 0;
+            for (int i = 0; i < resident.size; i++) sum += resident.delayNanos[i];
+        }
+        this.durationNanos = sum;
+    }
+
+    public static PlaybackPlan compile(MacroSource source, ScreenUtil.Geometry geometry) {
+        long count = source.getActionCount();
+        Block resident = null;
+        if (count >= 0 && count <= RESIDENT_LIMIT) {
+            resident = new Block((int) count);
+            resident.fill(source.cursor(), geometry);
+        }
+        return new PlaybackPlan(source, geometry, resident);
+    }
+
+    /**
+     * @return an iterator over the blocks of one loop; call {@link Blocks#rewind()} before each further loop.
+     */
+    public Blocks blocks() {
+        return resident != null ? new ResidentBlocks(resident) : new StreamingBlocks(source.cursor(), geometry);
+    }
+
+    /**
+     * @return the sum of all delays of one loop, or -1 for streamed plans where it is only known after a loop.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public boolean isResident() {
+        return resident != null;
+    }
+
+    public ScreenUtil.Geometry getGeometry() {
+        return geometry;
+    }
+
+    public interface Blocks {
+        /**
+         * @return the next block of this loop, or null when the loop is done.
+         */
+        Block next();
+
+        void rewind();
+    }
+
+    private static final class ResidentBlocks implements Blocks {
+        private final Block block;
+        private boolean consumed;
+
+        ResidentBlocks(Block block) {
+            this.block = block;
+        }
+
+        @Override
+        public Block next() {
+            if (consumed) return null;
+            consumed = true;
+            return block;
+        }
+
+        @Override
+        public void rewind() {
+            consumed = false;
+        }
+    }
+
+    private static final class StreamingBlocks implements Blocks {
+        private final ActionCursor cursor;
+        private final ScreenUtil.Geometry geometry;
+        private final Block scratch = new Block(BLOCK_SIZE);
+        private boolean exhausted;
+
+        StreamingBlocks(ActionCursor cursor, ScreenUtil.Geometry geometry) {
+            this.cursor = cursor;
+            this.geometry = geometry;
+        }
+
+        @Override
+        public Block next() {
+            if (exhausted) return null;
+            int n = scratch.fill(cursor, geometry);
+            if (n < scratch.capacity()) exhausted = true;
+            return n > 0 ? scratch : null;
+        }
+
+        @Override
+        public void rewind() {
+            cursor.rewind();
+            exhausted = false;
+        }
+    }
+
+    /**
+     * A run of compiled actions in parallel arrays.
+     */
+    public static final class Block {
+        private final byte[] op;
+        // MOVE/PRESS/RELEASE/WHEEL: a=屏幕X, b=屏幕Y, c=按键掩码/滚轮量；KEY_*: a=AWT键码
+        private final int[] a;
+        private final int[] b;
+        private final int[] c;
+        private final long[] delayNanos;
+        private int size;
+
+        Block(int capacity) {
+            op = new byte[capacity];
+            a = new int[capacity];
+            b = new int[capacity];
+            c = new int[capacity];
+            delayNanos = new long[capacity];
+        }
+
+        int capacity() {
+            return op.length;
+        }
+
+        // 从游标当前位置编译至多capacity个动作
+        int fill(ActionCursor cursor, ScreenUtil.Geometry geometry) {
+            int n = 0;
+            while (n < op.length && cursor.next()) {
+                int type = cursor.type();
+                delayNanos[n] = Math.max(0, cursor.delay()) * 1_000_000L;
+                if (type == 10 || type == 11) {
+                    op[n] = type == 10 ? OP_KEY_PRESS : OP_KEY_RELEASE;
+                    a[n] = cursor.awtKeyCode() > 0 ? cursor.awtKeyCode() : cursor.keyCode();
+                    b[n] = 0;
+                    c[n] = 0;
+                } else {
+                    a[n] = geometry.toRobotX(cursor.x());
+                    b[n] = geometry.toRobotY(cursor.y());
+                    switch (type) {
+                        case 1:
+                            op[n] = OP_PRESS;
+                            c[n] = buttonMask(cursor.button());
+                            break;
+                        case 2:
+                            op[n] = OP_RELEASE;
+                            c[n] = buttonMask(cursor.button());
+                            break;
+                        case 3:
+                            op[n] = OP_WHEEL;
+                            c[n] = cursor.wheelAmount();
+                            break;
+                        default:
+                            op[n] = OP_MOVE;
+                            c[n] = 0;
+                    }
+                }
+                n++;
+            }
+            size = n;
+            return n;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public byte op(int i) {
+            return op[i];
+        }
+
+        public long delayNanos(int i) {
+            return delayNanos[i];
+        }
+
+        // 操作数，含义见字段注释
+        public int a(int i) {
+            return a[i];
+        }
+
+        public int b(int i) {
+            return b[i];
+        }
+
+        public int c(int i) {
+            return c[i];
+        }
+
+        public void dispatch(int i, InputSink sink) {
+            try {
+                switch (op[i]) {
+                    case OP_MOVE:
+                        sink.mouseMove(a[i], b[i]);
+                        break;
+                    case OP_PRESS:
+                        sink.mouseMove(a[i], b[i]);
+                        sink.mousePress(c[i]);
+                        break;
+                    case OP_RELEASE:
+                        sink.mouseMove(a[i], b[i]);
+                        sink.mouseRelease(c[i]);
+                        break;
+                    case OP_WHEEL:
+                        sink.mouseMove(a[i], b[i]);
+                        sink.mouseWheel(c[i]);
+                        break;
+                    case OP_KEY_PRESS:
+                        sink.keyPress(a[i]);
+                        break;
+                    case OP_KEY_RELEASE:
+                        sink.keyRelease(a[i]);
+                        break;
+                }
+            } catch (IllegalArgumentException e) {
+                // 无效键码，与逐个回放时一样忽略
+            } catch (RuntimeException e) {
+                // 单个动作失败时跳过，不中断整个回放
+                log(LogMessage.of(LangKeys.LOG_PLAYBACK_ACTION_FAILED, e));
+            }
+        }
+    }
+
+    // btn: 1=左键，2=中键，3=右键
+    static int buttonMask(int btn) {
+        switch (btn) {
+            case 2: return InputEvent.BUTTON2_DOWN_MASK;
+            case 3: return InputEvent.BUTTON3_DOWN_MASK;
+            default: return InputEvent.BUTTON1_DOWN_MASK;
+        }
+    }
+}
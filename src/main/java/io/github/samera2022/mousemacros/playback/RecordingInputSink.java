@@ -0,0 +1,128 @@
+package io.github.samera2022.mousemacros.playback;
+
+import java.util.Arrays;
+
+/**
+ * Counts the input it receives and, unless created as counting-only, records every call with its
+ * {@link System#nanoTime()} timestamp so replay order and timing can be checked afterwards.
+ * Calls are expected from a single playback thread; read the results once playback has finished.
+ */
+public class RecordingInputSink implements InputSink {
+    public static final int MOUSE_MOVE = 0;
+    public static final int MOUSE_PRESS = 1;
+    public static final int MOUSE_RELEASE = 2;
+    public static final int MOUSE_WHEEL = 3;
+    public static final int KEY_PRESS = 4;
+    public static final int KEY_RELEASE = 5;
+
+    private final boolean recordEvents;
+    private final long[] counts = new long[6];
+    private byte[] kind;
+    private int[] a;
+    private int[] b;
+    private long[] timeNanos;
+    private int size = 0;
+
+    public RecordingInputSink() {
+        this(true);
+    }
+
+    /**
+     * @param recordEvents false to only count calls per kind, which allocates nothing during playback.
+     */
+    public RecordingInputSink(boolean recordEvents) {
+        this.recordEvents = recordEvents;
+        int capacity = recordEvents ? 1024 : 0;
+        kind = new byte[capacity];
+        a = new int[capacity];
+        b = new int[capacity];
+        timeNanos = new long[capacity];
+    }
+
+    @Override
+    public void mouseMove(int x, int y) {
+        add(MOUSE_MOVE, x, y);
+    }
+
+    @Override
+    public void mousePress(int buttonMask) {
+        add(MOUSE_PRESS, buttonMask, 0);
+    }
+
+    @Override
+    public void mouseRelease(int buttonMask) {
+        add(MOUSE_RELEASE, buttonMask, 0);
+    }
+
+    @Override
+    public void mouseWheel(int amount) {
+        add(MOUSE_WHEEL, amount, 0);
+    }
+
+    @Override
+    public void keyPress(int keyCode) {
+        add(KEY_PRESS, keyCode, 0);
+    }
+
+    @Override
+    public void keyRelease(int keyCode) {
+        add(KEY_RELEASE, keyCode, 0);
+    }
+
+    private void add(int k, int first, int second) {
+        counts[k]++;
+        if (!recordEvents) return;
+        if (size == kind.length) {
+            int capacity = size + (size >> 1);
+            kind = Arrays.copyOf(kind, capacity);
+            a = Arrays.copyOf(a, capacity);
+            b = Arrays.copyOf(b, capacity);
+            timeNanos = Arrays.copyOf(timeNanos, capacity);
+        }
+        kind[size] = (byte) k;
+        a[size] = first;
+        b[size] = second;
+        timeNanos[size] = System.nanoTime();
+        size++;
+    }
+
+    public long getCount(int kind) {
+        return counts[kind];
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (long c : counts) total += c;
+        return total;
+    }
+
+    /**
+     * @return the number of recorded calls (0 for a counting-only sink).
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getKind(int i) {
+        return kind[i];
+    }
+
+    // MOUSE_MOVE: x；MOUSE_PRESS/RELEASE: 按键掩码；MOUSE_WHEEL: 滚轮量；KEY_*: 键码
+    public int getFirst(int i) {
+        return a[i];
+    }
+
+    // MOUSE_MOVE: y，其余为0
+    public int getSecond(int i) {
+        return b[i];
+    }
+
+    public long getTimeNanos(int i) {
+        return timeNanos[i];
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.samera2022.mousemacros.playback;
+
+import java.awt.*;
+
+/**
+ * Sends playback input to the local desktop through a shared {@link Robot}.
+ */
+public class RobotInputSink implements InputSink {
+    // 共享Robot实例，避免频繁创建
+    private static RobotInputSink defaultSink;
+
+    private final Robot robot;
+
+    public RobotInputSink(Robot robot) {
+        this.robot = robot;
+    }
+
+    /**
+     * @throws AWTException if the platform does not allow low-level input control (e.g. headless).
+     */
+    public static synchronized RobotInputSink getDefault() throws AWTException {
+        if (defaultSink == null) {
+            defaultSink = new RobotInputSink(new Robot());
+        }
+        return defaultSink;
+    }
+
+    @Override
+    public void mouseMove(int x, int y) {
+        robot.mouseMove(x, y);
+    }
+
+    @Override
+    public void mousePress(int buttonMask) {
+        robot.mousePress(buttonMask);
+    }
+
+    @Override
+    public void mouseRelease(int buttonMask) {
+        robot.mouseRelease(buttonMask);
+    }
+
+    @Override
+    public void mouseWheel(int amount) {
+        robot.mouseWheel(amount);
+    }
+
+    @Override
+    public void keyPress(int keyCode) {
+        robot.keyPress(keyCode);
+    }
+
+    @Override
+    public void keyRelease(int keyCode) {
+        robot.keyRelease(keyCode);
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.samera2022.mousemacros.playback;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures how far the OS overshoots a short park/sleep request, so that the
+ * hybrid timing strategy only spins for the slack that is actually needed and the
+ * sleep strategy wakes early enough to park for the rest.
+ */
+public class TimerCalibration {
+    private static final int SAMPLES = 25;
+    private static final long PROBE_NANOS = 1_000_000L;
+    private static final long MIN_SLACK_NANOS = 50_000L;
+    private static final long MAX_SLACK_NANOS = 20_000_000L;
+
+    // 校准完成前使用的保守默认值
+    private static volatile long parkSlackNanos = 2_000_000L;
+    private static volatile long sleepSlackNanos = 2_000_000L;
+    private static volatile boolean calibrated = false;
+
+    /**
+     * Starts the calibration on a low-priority daemon thread.
+     */
+    public static void calibrateAsync() {
+        Thread t = new Thread(TimerCalibration::calibrate, "timer-calibration");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    }
+
+    /**
+     * Samples park and sleep overshoot and stores a high percentile of each.
+     */
+    public static void calibrate() {
+        long[] park = new long[SAMPLES];
+        long[] sleep = new long[SAMPLES];
+        try {
+            for (int i = 0; i < SAMPLES; i++) {
+                long start = System.nanoTime();
+                LockSupport.parkNanos(PROBE_NANOS);
+                park[i] = System.nanoTime() - start - PROBE_NANOS;
+
+                start = System.nanoTime();
+                Thread.sleep(1);
+                sleep[i] = System.nanoTime() - start - PROBE_NANOS;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        parkSlackNanos = percentile(park);
+        sleepSlackNanos = percentile(sleep);
+        calibrated = true;
+    }
+
+    // 取约90%分位数，避免单次调度抖动把自旋窗口拉得过大
+    private static long percentile(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        long value = sorted[(int) (sorted.length * 0.9)];
+        return Math.max(MIN_SLACK_NANOS, Math.min(MAX_SLACK_NANOS, value));
+    }
+
+    public static long getParkSlackNanos() {
+        return parkSlackNanos;
+    }
+
+    public static long getSleepSlackNanos() {
+        return sleepSlackNanos;
+    }
+
+    public static boolean isCalibrated() {
+        return calibrated;
+    }
+}
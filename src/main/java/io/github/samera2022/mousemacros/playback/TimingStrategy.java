@@ -0,0 +1,94 @@
+package io.github.samera2022.mousemacros.playback;
+
+import io.github.samera2022.mousemacros.config.ConfigManager;
+import io.github.samera2022.mousemacros.config.ConfigSnapshot;
+import io.github.samera2022.mousemacros.ui.frame.settings.SettingsRegistry;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ways of waiting for an absolute {@link System#nanoTime()} deadline during playback.
+ * The order matches the "timing_strategy" combo box (index 1 = HYBRID).
+ */
+public enum TimingStrategy {
+    /**
+     * Parks until the measured OS slack is left, then spins for the remainder.
+     */
+    HYBRID {
+        @Override
+        public void sleepUntil(long deadlineNanos) throws InterruptedException {
+            long slack = TimerCalibration.getParkSlackNanos();
+            long remaining;
+            while ((remaining = deadlineNanos - System.nanoTime()) > slack) {
+                LockSupport.parkNanos(remaining - slack);
+                checkInterrupted();
+            }
+            while (System.nanoTime() < deadlineNanos) {
+                Thread.onSpinWait();
+            }
+        }
+    },
+    /**
+     * Thread.sleep until the measured sleep slack is left, then parks for the remainder without spinning.
+     */
+    SLEEP {
+        @Override
+        public void sleepUntil(long deadlineNanos) throws InterruptedException {
+            long slack = TimerCalibration.getSleepSlackNanos();
+            long remaining;
+            // Thread.sleep只有毫秒精度且会多睡，不足1ms的部分交给park
+            while ((remaining = deadlineNanos - System.nanoTime() - slack) >= 1_000_000L) {
+                Thread.sleep(remaining / 1_000_000L);
+            }
+            while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+                checkInterrupted();
+            }
+        }
+    },
+    /**
+     * LockSupport.parkNanos without spinning.
+     */
+    PARK {
+        @Override
+        public void sleepUntil(long deadlineNanos) throws InterruptedException {
+            long remaining;
+            while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+                checkInterrupted();
+            }
+        }
+    },
+    /**
+     * Yields the core while waiting; most accurate, but keeps the thread runnable.
+     */
+    SPIN_YIELD {
+        @Override
+        public void sleepUntil(long deadlineNanos) throws InterruptedException {
+            while (System.nanoTime() < deadlineNanos) {
+                Thread.yield();
+                checkInterrupted();
+            }
+        }
+    };
+
+    /**
+     * Blocks until {@code deadlineNanos}; returns immediately if it has already passed.
+     */
+    public abstract void sleepUntil(long deadlineNanos) throws InterruptedException;
+
+    private static void checkInterrupted() throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+    }
+
+    public static TimingStrategy fromConfig() {
+        return fromConfig(ConfigManager.snapshot());
+    }
+
+    public static TimingStrategy fromConfig(ConfigSnapshot config) {
+        int index = config.getInt(SettingsRegistry.TIMING_STRATEGY);
+        TimingStrategy[] values = values();
+        if (index < 1 || index > values.length) return HYBRID;
+        return values[index - 1];
+    }
+}
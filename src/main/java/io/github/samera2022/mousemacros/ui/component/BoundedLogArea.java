@@ -0,0 +1,57 @@
+package io.github.samera2022.mousemacros.ui.component;
+
+import io.github.samera2022.mousemacros.config.ConfigManager;
+import io.github.samera2022.mousemacros.ui.frame.settings.SettingsRegistry;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+
+/**
+ * A read-only log area that keeps at most a configured number of lines (and a proportional number of
+ * characters). Once a cap is exceeded the oldest tenth is removed at once, so eviction stays rare and cheap.
+ */
+public class BoundedLogArea extends JTextArea {
+    // "log_line_limit"下拉框的选项，下标从1开始
+    private static final int[] LINE_LIMITS = {1_000, 5_000, 20_000, 100_000};
+    private static final int DEFAULT_LINE_LIMIT = 5_000;
+    private static final int CHARS_PER_LINE = 256;
+
+    public BoundedLogArea() {
+        setEditable(false);
+    }
+
+    @Override
+    public void append(String str) {
+        super.append(str);
+        evict();
+    }
+
+    public static int getLineLimit() {
+        int index = ConfigManager.snapshot().getInt(SettingsRegistry.LOG_LINE_LIMIT);
+        return index >= 1 && index <= LINE_LIMITS.length ? LINE_LIMITS[index - 1] : DEFAULT_LINE_LIMIT;
+    }
+
+    private void evict() {
+        int maxLines = getLineLimit();
+        int maxChars = maxLines * CHARS_PER_LINE;
+        Document doc = getDocument();
+        Element root = doc.getDefaultRootElement();
+        int lines = root.getElementCount();
+        if (lines <= maxLines && doc.getLength() <= maxChars) return;
+        // 超出上限后一次清掉十分之一，避免每次追加都移动整个文档
+        int keepLines = maxLines - maxLines / 10;
+        int removeLines = Math.max(0, lines - keepLines);
+        int end = removeLines > 0 ? root.getElement(removeLines - 1).getEndOffset() : 0;
+        int keepChars = maxChars - maxChars / 10;
+        if (doc.getLength() - end > keepChars) {
+            int offset = doc.getLength() - keepChars;
+            end = root.getElement(root.getElementIndex(offset)).getEndOffset();
+        }
+        try {
+            doc.remove(0, Math.min(end, doc.getLength()));
+        } catch (BadLocationException ignored) {
+        }
+    }
+}
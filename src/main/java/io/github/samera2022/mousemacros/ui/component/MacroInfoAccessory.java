@@ -0,0 +1,75 @@
+package io.github.samera2022.mousemacros.ui.component;
+
+import io.github.samera2022.mousemacros.Localizer;
+import io.github.samera2022.mousemacros.macro.MacroLibraryIndex;
+import io.github.samera2022.mousemacros.util.OtherUtil;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+
+/**
+ * File chooser accessory that shows the library index entry of the selected macro,
+ * so the user can tell macros apart without loading them.
+ */
+public class MacroInfoAccessory extends JTextArea {
+    private static final int MAX_KEYS_SHOWN = 8;
+    private static final int MAX_DUPLICATES_SHOWN = 3;
+
+    public MacroInfoAccessory(JFileChooser chooser) {
+        setEditable(false);
+        setOpaque(false);
+        setLineWrap(true);
+        setWrapStyleWord(true);
+        setBorder(BorderFactory.createEmptyBorder(0, 8, 0, 0));
+        setPreferredSize(new Dimension(220, 0));
+        chooser.addPropertyChangeListener(JFileChooser.SELECTED_FILE_CHANGED_PROPERTY,
+                e -> show((File) e.getNewValue()));
+    }
+
+    private void show(File file) {
+        if (file == null || file.isDirectory()) {
+            setText("");
+            return;
+        }
+        MacroLibraryIndex.Entry entry = MacroLibraryIndex.get(file);
+        if (entry == null) {
+            setText(Localizer.get("macro_info.not_indexed"));
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Localizer.get("macro_info.events"), entry.getEventCount())).append('\n');
+        sb.append(String.format(Localizer.get("macro_info.duration"), entry.getDuration() / 1000.0)).append('\n');
+        if (entry.hasBounds()) {
+            sb.append(String.format(Localizer.get("macro_info.bounds"),
+                    entry.getMinX(), entry.getMinY(), entry.getMaxX(), entry.getMaxY())).append('\n');
+        }
+        int[] keys = entry.getKeyCodes();
+        if (keys.length > 0) {
+            StringBuilder names = new StringBuilder();
+            for (int i = 0; i < keys.length && i < MAX_KEYS_SHOWN; i++) {
+                if (i > 0) names.append(", ");
+                names.append(OtherUtil.getNativeKeyDisplayText(keys[i]));
+            }
+            if (keys.length > MAX_KEYS_SHOWN) names.append(", ...");
+            sb.append(String.format(Localizer.get("macro_info.keys"), names)).append('\n');
+        }
+        // 库中内容相同的其他宏（同一宏的普通文件与分块清单哈希相同）
+        StringBuilder duplicates = new StringBuilder();
+        int shown = 0, total = 0;
+        for (MacroLibraryIndex.Entry other : MacroLibraryIndex.findByHash(entry.getHash())) {
+            if (other.getPath().equals(entry.getPath())) continue;
+            if (shown < MAX_DUPLICATES_SHOWN) {
+                if (shown++ > 0) duplicates.append(", ");
+                duplicates.append(other.getPath());
+            }
+            total++;
+        }
+        if (total > 0) {
+            if (total > MAX_DUPLICATES_SHOWN) duplicates.append(", ...");
+            sb.append(String.format(Localizer.get("macro_info.duplicates"), duplicates)).append('\n');
+        }
+        setText(sb.toString());
+        setCaretPosition(0);
+    }
+}
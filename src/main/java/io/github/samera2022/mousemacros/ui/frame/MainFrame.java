@@ -8,10 +8,15 @@ import io.github.samera2022.mousemacros.config.ConfigManager;
 import io.github.samera2022.mousemacros.constant.OtherConsts;
 import io.github.samera2022.mousemacros.listener.GlobalMouseListener;
 import io.github.samera2022.mousemacros.manager.CacheManager;
+import io.github.samera2022.mousemacros.manager.LogManager;
+import io.github.samera2022.mousemacros.manager.MacroIoService;
 import io.github.samera2022.mousemacros.manager.MacroManager;
+import io.github.samera2022.mousemacros.ui.component.BoundedLogArea;
 import io.github.samera2022.mousemacros.ui.frame.settings.HotkeyDialog;
 import io.github.samera2022.mousemacros.util.ComponentUtil;
 import io.github.samera2022.mousemacros.util.OtherUtil;
+import io.github.samera2022.mousemacros.util.ScreenUtil;
+import io.github.samera2022.mousemacros.util.StartupTimer;
 import io.github.samera2022.mousemacros.util.SystemUtil;
 
 import javax.swing.*;
@@ -28,7 +33,7 @@ import static io.github.samera2022.mousemacros.manager.LogManager.log;
 
 public class MainFrame extends JFrame {
     public static JTextArea logArea;
-    private final JButton startBtn, stopBtn, playBtn, saveBtn, loadBtn, settingsBtn, abortBtn;
+    private final JButton startBtn, stopBtn, playBtn, saveBtn, loadBtn, settingsBtn, abortBtn, cancelIoBtn;
     public static int keyRecord = NativeKeyEvent.VC_F2;
     public static int keyStop = NativeKeyEvent.VC_F3;
     public static int keyPlay = NativeKeyEvent.VC_F4;
@@ -43,8 +48,7 @@ public class MainFrame extends JFrame {
 
     public MainFrame() {
         if (ConfigManager.getBoolean("follow_system_settings")) {
-            String[] availableLangs = ConfigManager.getAvailableLangs();
-            ConfigManager.set("switch_lang", SystemUtil.getSystemLang(availableLangs));
+            ConfigManager.set("switch_lang", SystemUtil.getSystemLang());
             ConfigManager.set("enable_dark_mode", SystemUtil.isSystemDarkMode());
         }
         Localizer.load(ConfigManager.getString("switch_lang"));
@@ -73,8 +77,8 @@ public class MainFrame extends JFrame {
         setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
         setLocationRelativeTo(null);
         setLayout(new BorderLayout());
-        logArea = new JTextArea();
-        logArea.setEditable(false);
+        logArea = new BoundedLogArea();
+        LogManager.attach(logArea);
         JScrollPane scrollPane = new JScrollPane(logArea);
         scrollPane.setBorder(null);
         add(scrollPane, BorderLayout.CENTER);
@@ -104,9 +108,20 @@ public class MainFrame extends JFrame {
         panel.add(row1);
         panel.add(row2);
 
+        // 保存/加载进行中时显示的进度条
+        JPanel progressPanel = new JPanel(new BorderLayout(5, 0));
+        progressPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 5, 10));
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        cancelIoBtn = new JButton(Localizer.get("main_frame.cancel_io"));
+        cancelIoBtn.addActionListener(e -> MacroIoService.cancel());
+        progressPanel.add(progressBar, BorderLayout.CENTER);
+        progressPanel.add(cancelIoBtn, BorderLayout.EAST);
+        MacroIoService.attach(progressPanel, progressBar);
+
         JPanel southContainer = new JPanel(new BorderLayout());
         southContainer.add(separator, BorderLayout.NORTH);
         southContainer.add(panel, BorderLayout.CENTER);
+        southContainer.add(progressPanel, BorderLayout.SOUTH);
 
         add(southContainer, BorderLayout.SOUTH);
 
@@ -145,24 +160,19 @@ public class MainFrame extends JFrame {
         });
         settingsBtn.addActionListener(e -> SwingUtilities.invokeLater(() -> new SettingsDialog().setVisible(true)));
 
-        Logger logger = Logger.getLogger(GlobalScreen.class.getPackage().getName());
-        logger.setLevel(Level.OFF);
-        logger.setUseParentHandlers(false);
-
-        try {
-            GlobalScreen.registerNativeHook();
-        } catch (Exception e) {
-            log(Localizer.get("log.hook_registration_failed") + e.getMessage());
-        }
-        GlobalScreen.addNativeKeyListener(GML);
-        GlobalScreen.addNativeMouseListener(GML);
-        GlobalScreen.addNativeMouseWheelListener(GML);
-        GlobalScreen.addNativeMouseMotionListener(GML);
         readjust();
         setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
         setLocationRelativeTo(null);
         ComponentUtil.setMode(getContentPane(), ConfigManager.getBoolean("enable_dark_mode") ?OtherConsts.DARK_MODE:OtherConsts.LIGHT_MODE);
         addWindowListener(new WindowClosingAdapter());
+        // 分辨率、排列或缩放变化时窗口的图形配置随之更新，此时刷新屏幕几何信息
+        addPropertyChangeListener("graphicsConfiguration", e -> {
+            try {
+                ScreenUtil.refresh();
+            } catch (RuntimeException ignored) {
+                // 显示器插拔过程中可能短暂获取失败，开始录制或回放时会再次刷新
+            }
+        });
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
@@ -181,11 +191,38 @@ public class MainFrame extends JFrame {
         });
     }
 
+    /**
+     * Registers the global hook and listeners on a background thread; loading the native library
+     * would otherwise hold up the first paint.
+     */
+    public static void registerNativeHookAsync() {
+        Thread t = new Thread(() -> {
+            long begin = StartupTimer.begin();
+            Logger logger = Logger.getLogger(GlobalScreen.class.getPackage().getName());
+            logger.setLevel(Level.OFF);
+            logger.setUseParentHandlers(false);
+
+            try {
+                GlobalScreen.registerNativeHook();
+            } catch (Exception e) {
+                log(Localizer.get("log.hook_registration_failed") + e.getMessage());
+            }
+            GlobalScreen.addNativeKeyListener(GML);
+            GlobalScreen.addNativeMouseListener(GML);
+            GlobalScreen.addNativeMouseWheelListener(GML);
+            GlobalScreen.addNativeMouseMotionListener(GML);
+            StartupTimer.end("Native hook", begin);
+        }, "native-hook-registration");
+        t.setDaemon(true);
+        t.start();
+    }
+
     public void refreshMainFrameTexts() {
         setTitle(Localizer.get("main_frame"));
         refreshSpecialTexts();
         saveBtn.setText(Localizer.get("main_frame.save_macro"));
         loadBtn.setText(Localizer.get("main_frame.load_macro"));
+        cancelIoBtn.setText(Localizer.get("main_frame.cancel_io"));
         settingsBtn.setText(Localizer.get("settings"));
         if (trayIcon != null) {
             trayIcon.setToolTip(Localizer.get("main_frame"));
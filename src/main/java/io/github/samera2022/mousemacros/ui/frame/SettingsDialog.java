@@ -7,11 +7,11 @@ import io.github.samera2022.mousemacros.adapter.WindowClosingAdapter;
 import io.github.samera2022.mousemacros.config.ConfigManager;
 import io.github.samera2022.mousemacros.constant.IconConsts;
 import io.github.samera2022.mousemacros.constant.OtherConsts;
+import io.github.samera2022.mousemacros.macro.MacroLibraryIndex;
 import io.github.samera2022.mousemacros.ui.component.DocumentInputFilter;
 import io.github.samera2022.mousemacros.ui.frame.settings.*;
 import io.github.samera2022.mousemacros.util.ComponentUtil;
 import io.github.samera2022.mousemacros.util.ConsoleOutputCapturer;
-import io.github.samera2022.mousemacros.util.FileUtil;
 import io.github.samera2022.mousemacros.util.SystemUtil;
 
 import javax.swing.*;
@@ -184,6 +184,13 @@ public class SettingsDialog extends JDialog {
                     return text.equals("-1") || text.matches("\\d+") || text.isEmpty() || text.equals("-");
                 }
             };
+        } else if (setting == SettingsRegistry.TRAJECTORY_TOLERANCE) {
+            filter = new DocumentInputFilter() {
+                @Override
+                public boolean isValidContent(String text) {
+                    return text.matches("\\d{0,3}(\\.\\d{0,2})?") || text.isEmpty();
+                }
+            };
         } else if (setting == SettingsRegistry.REPEAT_DELAY) {
             filter = new DocumentInputFilter() {
                 @Override
@@ -311,7 +318,7 @@ public class SettingsDialog extends JDialog {
                 String timeStamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
                 String fileName = "report-" + timeStamp + ".txt";
                 String filePath = REPORTS_DIR.getAbsolutePath() + File.separator + fileName;
-                FileUtil.writeFile(filePath, ConsoleOutputCapturer.getOutput());
+                ConsoleOutputCapturer.exportTo(new File(filePath));
                 String message = "<html>" + Localizer.get("settings.export_log.success") + "<br>" + filePath + "</html>";
                 JOptionPane.showMessageDialog(this, new JLabel(message), Localizer.get("settings.success"), JOptionPane.INFORMATION_MESSAGE);
 
@@ -346,6 +353,7 @@ public class SettingsDialog extends JDialog {
         saveSettingsBtn.addActionListener(e -> {
             saveSettings();
             ConfigManager.saveConfig();
+            MacroLibraryIndex.start();
             Localizer.load(ConfigManager.getString("switch_lang"));
             MAIN_FRAME.refreshMainFrameTexts();
             ComponentUtil.setMode(getContentPane(), ConfigManager.getBoolean("enable_dark_mode") ?OtherConsts.DARK_MODE:OtherConsts.LIGHT_MODE);
@@ -408,7 +416,7 @@ public class SettingsDialog extends JDialog {
                 String configKey = setting.i18nKey;
                 if (!isEnabled) {
                     if (setting == SettingsRegistry.SWITCH_LANG) {
-                        valueToSet = SystemUtil.getSystemLang(ConfigManager.getAvailableLangs());
+                        valueToSet = SystemUtil.getSystemLang();
                     } else if (setting == SettingsRegistry.ENABLE_DARK_MODE) {
                         valueToSet = SystemUtil.isSystemDarkMode();
                     } else {
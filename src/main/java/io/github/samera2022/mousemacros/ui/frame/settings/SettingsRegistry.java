@@ -13,9 +13,16 @@ public enum SettingsRegistry {
     SYSTEM_SECTION("system_section", OtherConsts.SECTION),
     ENABLE_DEFAULT_STORAGE("enable_default_storage", OtherConsts.CHECK_BOX, null, false),
     DEFAULT_MMC_STORAGE_PATH("default_mmc_storage_path", OtherConsts.FILE_CHOOSER, "enable_default_storage", ""),
+    ENABLE_CHUNK_STORAGE("enable_chunk_storage", OtherConsts.CHECK_BOX, "enable_default_storage", false),
+    LOG_LINE_LIMIT("log_line_limit", OtherConsts.COMBO_BOX, null, 2, 4),
 
     MACRO_SECTION("macro_section", OtherConsts.SECTION),
     ENABLE_QUICK_MODE("enable_quick_mode", OtherConsts.CHECK_BOX, null, false),
+    TIMING_STRATEGY("timing_strategy", OtherConsts.COMBO_BOX, null, 1, 4),
+    ENABLE_TRAJECTORY_SIMPLIFICATION("enable_trajectory_simplification", OtherConsts.CHECK_BOX, null, false),
+    TRAJECTORY_TOLERANCE("trajectory_tolerance", OtherConsts.SPECIFIC_TEXT_FIELD, "enable_trajectory_simplification", 2.0, 0, 7),
+    ENABLE_RECORDING_JOURNAL("enable_recording_journal", OtherConsts.CHECK_BOX, null, false),
+    JOURNAL_FSYNC_POLICY("journal_fsync_policy", OtherConsts.COMBO_BOX, "enable_recording_journal", 2, 3),
     ENABLE_CUSTOM_MACRO_SETTINGS("enable_custom_macro_settings", OtherConsts.CHECK_BOX, null, false),
     REPEAT_TIME("repeat_times", OtherConsts.SPECIFIC_TEXT_FIELD, "enable_custom_macro_settings", 1, 0, 7),
     REPEAT_DELAY("repeat_delay", OtherConsts.SPECIFIC_TEXT_FIELD, "enable_custom_macro_settings", 0.0, 0, 7);
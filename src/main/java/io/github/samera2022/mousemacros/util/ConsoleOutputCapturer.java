@@ -1,36 +1,144 @@
 package io.github.samera2022.mousemacros.util;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintStream;
+import io.github.samera2022.mousemacros.config.ConfigManager;
 
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Tees stdout/stderr into rolling segment files under CONFIG_DIR/logs: console.log is the active segment,
+ * console.1.log … console.N.log are older ones. Disk and memory use stay bounded however long the app runs,
+ * and a report is produced by streaming the segments oldest first. Text that must not reach the disk is
+ * printed with {@link #printConsoleOnly(String)}.
+ */
 public class ConsoleOutputCapturer {
-    private static final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    private static final File LOG_DIR = new File(ConfigManager.CONFIG_DIR, "logs");
+    private static final long SEGMENT_BYTES = 1L << 20;
+    private static final int MAX_SEGMENTS = 4;
+
     private static final PrintStream originalOut = System.out;
     private static final PrintStream originalErr = System.err;
+    private static final Object lock = new Object();
+    private static OutputStream segment;
+    private static long segmentSize;
 
     public static void start() {
-        PrintStream ps = new PrintStream(new OutputStream() {
-            @Override
-            public void write(int b) throws IOException {
-                baos.write(b);
-                originalOut.write(b);
+        synchronized (lock) {
+            if (segment != null) return;
+            try {
+                LOG_DIR.mkdirs();
+                // 上次运行的输出保留为较旧的分段
+                if (segmentFile(0).length() > 0) rotate();
+                openSegment();
+            } catch (IOException e) {
+                originalErr.println("Failed to open console log segment: " + e.getMessage());
+                return;
             }
-        });
-        System.setOut(ps);
-
-        PrintStream es = new PrintStream(new OutputStream() {
-            @Override
-            public void write(int b) throws IOException {
-                baos.write(b);
-                originalErr.write(b);
+        }
+        System.setOut(new PrintStream(new TeeStream(originalOut), true));
+        System.setErr(new PrintStream(new TeeStream(originalErr), true));
+    }
+
+    /**
+     * Prints the text to the original stdout without writing it to the segments.
+     */
+    public static void printConsoleOnly(String text) {
+        originalOut.print(text);
+        originalOut.flush();
+    }
+
+    /**
+     * Copies all retained segments, oldest first, into the target file.
+     */
+    public static void exportTo(File target) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+        synchronized (lock) {
+            if (segment != null) segment.flush();
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(target))) {
+                for (int i = MAX_SEGMENTS - 1; i >= 0; i--) {
+                    File file = segmentFile(i);
+                    if (file.isFile()) Files.copy(file.toPath(), out);
+                }
             }
-        });
-        System.setErr(es);
+        }
     }
 
-    public static String getOutput() {
-        return baos.toString();
+    private static File segmentFile(int index) {
+        return new File(LOG_DIR, index == 0 ? "console.log" : "console." + index + ".log");
+    }
+
+    private static void openSegment() throws IOException {
+        File file = segmentFile(0);
+        segment = new BufferedOutputStream(new FileOutputStream(file, true));
+        segmentSize = file.length();
+    }
+
+    private static void rotate() throws IOException {
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+        Files.deleteIfExists(segmentFile(MAX_SEGMENTS - 1).toPath());
+        for (int i = MAX_SEGMENTS - 2; i >= 0; i--) {
+            File file = segmentFile(i);
+            if (file.exists()) {
+                Files.move(file.toPath(), segmentFile(i + 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static void writeSegment(byte[] b, int off, int len) {
+        synchronized (lock) {
+            if (segment == null) return;
+            try {
+                segment.write(b, off, len);
+                segmentSize += len;
+                if (segmentSize >= SEGMENT_BYTES) {
+                    rotate();
+                    openSegment();
+                }
+            } catch (IOException e) {
+                // 日志文件不可写时只保留控制台输出
+                segment = null;
+            }
+        }
+    }
+
+    private static void flushSegment() {
+        synchronized (lock) {
+            if (segment == null) return;
+            try {
+                segment.flush();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // 整块转发PrintStream的写入，而不是逐字节复制
+    private static final class TeeStream extends OutputStream {
+        private final PrintStream original;
+
+        TeeStream(PrintStream original) {
+            this.original = original;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            writeSegment(b, off, len);
+            original.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            flushSegment();
+            original.flush();
+        }
     }
 }
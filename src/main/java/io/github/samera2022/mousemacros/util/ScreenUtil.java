@@ -1,42 +1,118 @@
 package io.github.samera2022.mousemacros.util;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 
+/**
+ * Caches the screen geometry. It is refreshed when recording or playback starts and when the main
+ * window reports a graphics configuration change, instead of being polled.
+ */
 public class ScreenUtil {
-    // 将归一化坐标还原为主屏幕坐标（适配Robot，自动处理DPI缩放）
-    public static Point denormalizeFromVirtualOrigin(int x, int y) {
-        Point virtualOrigin = getVirtualOrigin();
-        // 全局坐标
-        int globalX = x + virtualOrigin.x;
-        int globalY = y + virtualOrigin.y;
-        // 获取主屏幕左上角和缩放因子
-        GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
-                .getDefaultScreenDevice().getDefaultConfiguration();
-        Rectangle primaryBounds = gc.getBounds();
-        double scaleX = gc.getDefaultTransform().getScaleX();
-        double scaleY = gc.getDefaultTransform().getScaleY();
-        // 转为主屏幕坐标并除以缩放因子
-        int robotX = (int) Math.round((globalX - primaryBounds.x) / scaleX);
-        int robotY = (int) Math.round((globalY - primaryBounds.y) / scaleY);
-        return new Point(robotX, robotY);
+    private static volatile Geometry geometry;
+
+    /**
+     * Immutable snapshot of the screen layout: the virtual origin used for normalized macro
+     * coordinates and the primary screen's bounds and scale, precomputed into an affine
+     * mapping from normalized coordinates to Robot coordinates.
+     */
+    public static final class Geometry {
+        public final int originX;
+        public final int originY;
+        private final Rectangle primaryBounds;
+        private final double scaleX;
+        private final double scaleY;
+        // robotX = x * m00 + m02, robotY = y * m11 + m12
+        private final double m00;
+        private final double m02;
+        private final double m11;
+        private final double m12;
+
+        Geometry(int originX, int originY, Rectangle primaryBounds, double scaleX, double scaleY) {
+            this.originX = originX;
+            this.originY = originY;
+            this.primaryBounds = new Rectangle(primaryBounds);
+            this.scaleX = scaleX;
+            this.scaleY = scaleY;
+            m00 = 1.0 / scaleX;
+            m02 = (originX - primaryBounds.x) / scaleX;
+            m11 = 1.0 / scaleY;
+            m12 = (originY - primaryBounds.y) / scaleY;
+        }
+
+        // 将归一化坐标还原为主屏幕坐标（适配Robot，自动处理DPI缩放）
+        public int toRobotX(int x) {
+            return (int) Math.round(x * m00 + m02);
+        }
+
+        public int toRobotY(int y) {
+            return (int) Math.round(y * m11 + m12);
+        }
+
+        // 将全局屏幕坐标归一化到虚拟原点
+        public int normalizeX(int x) {
+            return x - originX;
+        }
+
+        public int normalizeY(int y) {
+            return y - originY;
+        }
+
+        public AffineTransform toRobotTransform() {
+            return new AffineTransform(m00, 0, 0, m11, m02, m12);
+        }
+
+        boolean sameAs(Geometry other) {
+            return other != null && originX == other.originX && originY == other.originY
+                    && primaryBounds.equals(other.primaryBounds) && scaleX == other.scaleX && scaleY == other.scaleY;
+        }
+    }
+
+    /**
+     * Returns the current snapshot; never queries the graphics environment once it has been computed.
+     */
+    public static Geometry getGeometry() {
+        Geometry g = geometry;
+        return g != null ? g : refresh();
+    }
+
+    /**
+     * Re-reads the display configuration and publishes a new snapshot only if it changed.
+     */
+    public static Geometry refresh() {
+        Geometry current = geometry;
+        Geometry fresh = computeGeometry();
+        if (fresh.sameAs(current)) return current;
+        geometry = fresh;
+        return fresh;
     }
 
-    // 获取所有屏幕的最左上角坐标（多屏归一化原点）
-    private static Point getVirtualOrigin() {
+    private static Geometry computeGeometry() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new Geometry(0, 0, new Rectangle(), 1.0, 1.0);
+        }
         GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
-        GraphicsDevice[] devices = ge.getScreenDevices();
+        // 获取所有屏幕的最左上角坐标（多屏归一化原点）
         int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
-        for (GraphicsDevice device : devices) {
+        for (GraphicsDevice device : ge.getScreenDevices()) {
             Rectangle bounds = device.getDefaultConfiguration().getBounds();
             if (bounds.x < minX) minX = bounds.x;
             if (bounds.y < minY) minY = bounds.y;
         }
-        return new Point(minX, minY);
+        // 获取主屏幕左上角和缩放因子
+        GraphicsConfiguration gc = ge.getDefaultScreenDevice().getDefaultConfiguration();
+        AffineTransform transform = gc.getDefaultTransform();
+        return new Geometry(minX, minY, gc.getBounds(), transform.getScaleX(), transform.getScaleY());
+    }
+
+    // 将归一化坐标还原为主屏幕坐标（适配Robot，自动处理DPI缩放）
+    public static Point denormalizeFromVirtualOrigin(int x, int y) {
+        Geometry g = getGeometry();
+        return new Point(g.toRobotX(x), g.toRobotY(y));
     }
 
     // 将全局屏幕坐标归一化到虚拟原点
     public static Point normalizeToVirtualOrigin(int x, int y) {
-        Point origin = getVirtualOrigin();
-        return new Point(x - origin.x, y - origin.y);
+        Geometry g = getGeometry();
+        return new Point(g.normalizeX(x), g.normalizeY(y));
     }
 }
@@ -0,0 +1,21 @@
+package io.github.samera2022.mousemacros.util;
+
+/**
+ * Times the startup phases and prints them to the console log, so cold-start regressions are visible.
+ * Phases run on different threads, so each one reports its own duration and when it ended relative to launch.
+ * Nothing is printed unless the app is started with {@code -Dmousemacros.startup.timing=true}.
+ */
+public class StartupTimer {
+    private static final long LAUNCH = System.nanoTime();
+    private static final boolean ENABLED = Boolean.getBoolean("mousemacros.startup.timing");
+
+    public static long begin() {
+        return System.nanoTime();
+    }
+
+    public static void end(String phase, long begin) {
+        if (!ENABLED) return;
+        long now = System.nanoTime();
+        System.out.printf("[Startup] %s: %.1f ms (%.1f ms after launch)%n", phase, (now - begin) / 1e6, (now - LAUNCH) / 1e6);
+    }
+}
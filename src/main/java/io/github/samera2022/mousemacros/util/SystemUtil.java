@@ -1,5 +1,7 @@
 package io.github.samera2022.mousemacros.util;
 
+import io.github.samera2022.mousemacros.Localizer;
+
 import java.awt.*;
 
 public class SystemUtil {
@@ -11,6 +13,9 @@ public class SystemUtil {
         double scaleY = gc.getDefaultTransform().getScaleY();
         return new double[]{scaleX, scaleY};
     }
+    public static String getSystemLang() {
+        return getSystemLang(Localizer.getAvailableLangs());
+    }
     // 获取系统语言（如lang文件夹无该语言则返回en_us）
     public static String getSystemLang(String[] availableLangs) {
         String sysLang = System.getProperty("user.language", "en").toLowerCase();
@@ -0,0 +1,123 @@
+package io.github.samera2022.mousemacros.macro;
+
+import io.github.samera2022.mousemacros.action.MacroTrack;
+import io.github.samera2022.mousemacros.config.ConfigManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkStoreTest {
+    @TempDir
+    Path temp;
+
+    private File storage;
+    private MacroTrack track;
+
+    @BeforeEach
+    void setUp() {
+        storage = temp.resolve("storage").toFile();
+        storage.mkdirs();
+        configure(true, storage);
+        track = new MacroTrack();
+        // 足够长，保证切分出多个块
+        for (int i = 0; i < 50_000; i++) {
+            track.add(i % 1920, (i * 7) % 1080, i % 3 == 0 ? 0 : 1, 1, 5 + i % 11, 0, 0, 0);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        ConfigManager.resetToDefault();
+        ConfigManager.saveConfig();
+    }
+
+    @Test
+    void savesInsideTheStoragePathAsManifest() throws IOException {
+        File file = saveChunked("sub/macro.mmc");
+        assertTrue(isManifest(file));
+        assertFalse(ChunkStore.appliesTo(temp.resolve("elsewhere.mmc").toFile()));
+        assertSameActions(track, MmcFormat.read(file, null));
+    }
+
+    @Test
+    void loadsAfterTheStoragePathChanges() throws IOException {
+        File file = saveChunked("sub/macro.mmc");
+        File other = temp.resolve("other").toFile();
+        other.mkdirs();
+        configure(true, other);
+        assertSameActions(track, MmcFormat.read(file, null));
+
+        configure(false, storage);
+        assertNull(ChunkStore.getDirectory());
+        assertFalse(ChunkStore.appliesTo(file));
+        assertSameActions(track, MmcFormat.read(file, null));
+    }
+
+    @Test
+    void loadsAfterTheStorageFolderMoves() throws IOException {
+        saveChunked("sub/macro.mmc");
+        File moved = temp.resolve("moved").toFile();
+        Files.move(storage.toPath(), moved.toPath());
+        assertSameActions(track, MmcFormat.read(new File(moved, "sub/macro.mmc"), null));
+    }
+
+    @Test
+    void loadsACopyOutsideTheStorageFolder() throws IOException {
+        File file = saveChunked("macro.mmc");
+        File copy = temp.resolve("copy.mmc").toFile();
+        Files.copy(file.toPath(), copy.toPath());
+        assertSameActions(track, MmcFormat.read(copy, null));
+    }
+
+    @Test
+    void reportsWhereMissingChunksWereKept() throws IOException {
+        File file = saveChunked("macro.mmc");
+        File copy = temp.resolve("copy.mmc").toFile();
+        Files.copy(file.toPath(), copy.toPath());
+        File chunks = new File(storage, ChunkStore.DIR_NAME);
+        Files.move(chunks.toPath(), temp.resolve("gone"));
+        IOException e = assertThrows(IOException.class, () -> MmcFormat.read(copy, null));
+        assertTrue(e.getMessage().contains(chunks.getAbsolutePath()), e.getMessage());
+    }
+
+    private void configure(boolean enabled, File path) {
+        ConfigManager.set("enable_default_storage", enabled);
+        ConfigManager.set("default_mmc_storage_path", path.getAbsolutePath());
+        ConfigManager.set("enable_chunk_storage", true);
+        ConfigManager.saveConfig();
+    }
+
+    private File saveChunked(String name) throws IOException {
+        File file = new File(storage, name);
+        file.getParentFile().mkdirs();
+        assertTrue(ChunkStore.appliesTo(file));
+        try (OutputStream out = ChunkStore.create(new FileOutputStream(file));
+             MmcWriter writer = new MmcWriter(out)) {
+            writer.writeAll(track.cursor());
+        }
+        return file;
+    }
+
+    private static boolean isManifest(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return ChunkStore.isManifest(in);
+        }
+    }
+
+    private static void assertSameActions(MacroTrack expected, MacroTrack actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getX(i), actual.getX(i));
+            assertEquals(expected.getY(i), actual.getY(i));
+            assertEquals(expected.getType(i), actual.getType(i));
+            assertEquals(expected.getDelay(i), actual.getDelay(i));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.samera2022.mousemacros.macro;
+
+import io.github.samera2022.mousemacros.action.MacroTrack;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedMacroSourceTest {
+    @TempDir
+    File dir;
+
+    private File write(String name, int actions) throws IOException {
+        MacroTrack track = new MacroTrack();
+        for (int i = 0; i < actions; i++) track.add(i, i, 0, 0, 10, 0, 0, 0);
+        File file = new File(dir, name);
+        try (MmcWriter writer = new MmcWriter(new FileOutputStream(file))) {
+            writer.writeAll(track.cursor());
+        }
+        return file;
+    }
+
+    @Test
+    void closeReleasesFile() throws IOException {
+        File file = write("a.mmc", 100);
+        MappedMacroSource source = new MappedMacroSource(file);
+        assertEquals(100, source.getActionCount());
+        source.close();
+        source.close();
+        assertThrows(IllegalStateException.class, source::cursor);
+        // 解除映射后可以直接覆盖原文件
+        File other = write("b.mmc", 10);
+        Files.move(other.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(file.delete());
+    }
+}
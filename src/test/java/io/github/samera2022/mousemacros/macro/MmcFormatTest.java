@@ -0,0 +1,54 @@
+package io.github.samera2022.mousemacros.macro;
+
+import io.github.samera2022.mousemacros.action.MacroTrack;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MmcFormatTest {
+    private static byte[] encode(MacroTrack track) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MmcWriter writer = new MmcWriter(out)) {
+            writer.writeAll(track.cursor());
+        }
+        return out.toByteArray();
+    }
+
+    private static MacroTrack sample() {
+        MacroTrack track = new MacroTrack();
+        for (int i = 0; i < 1000; i++) track.add(i, i * 2, 0, 0, 10, 0, 0, 0);
+        return track;
+    }
+
+    @Test
+    void readsCompleteFile() throws IOException {
+        byte[] bytes = encode(sample());
+        assertEquals(1000, MmcFormat.read(new ByteArrayInputStream(bytes), null).size());
+    }
+
+    @Test
+    void reportsTruncatedFileWithPartialActions() throws IOException {
+        byte[] bytes = encode(sample());
+        byte[] cut = Arrays.copyOf(bytes, bytes.length / 2);
+        MmcFormat.TruncatedException e = assertThrows(MmcFormat.TruncatedException.class,
+                () -> MmcFormat.read(new ByteArrayInputStream(cut), null));
+        int partial = e.getPartial().size();
+        assertTrue(partial > 0 && partial < 1000, "partial " + partial);
+    }
+
+    @Test
+    void readerStaysLenientForRecovery() throws IOException {
+        byte[] bytes = encode(sample());
+        MacroTrack track = new MacroTrack();
+        try (MmcReader reader = new MmcReader(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)))) {
+            reader.readInto(track);
+            assertTrue(reader.isTruncated());
+        }
+        assertEquals(1000, track.size());
+    }
+}